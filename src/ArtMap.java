@@ -0,0 +1,616 @@
+
+/****************************************************************************************
+ * @file  ArtMap.java
+ */
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/****************************************************************************************
+ * This class provides adaptive radix tree (ART) maps.  A key is turned into its
+ * normalized byte string (see KeyEncoder) and the tree branches on one byte per level,
+ * so lookups cost one short node search per byte rather than a full key comparison per
+ * level, and keys with long shared prefixes (e.g., "crsCode787234") share their path.
+ * Inner nodes adapt their layout to the number of children:
+ *
+ *   Node4    up to 4 children,   sorted key bytes searched linearly
+ *   Node16   up to 16 children,  sorted key bytes searched by binary search
+ *   Node48   up to 48 children,  a 256-entry byte index into the child slots
+ *   Node256  up to 256 children, indexed directly by the key byte
+ *
+ * Runs of bytes shared by all keys below a node are stored in the node (path
+ * compression).  As the encoding is order-preserving, an in-order walk of the tree
+ * visits the keys in KeyType order, which gives range and prefix lookups.
+ */
+public class ArtMap <V>
+       extends AbstractMap <KeyType, V>
+       implements Serializable, Cloneable, SortedMap <KeyType, V>, OrderedIndex <KeyType, V>
+{
+    /** The root of the tree (null if empty).
+     */
+    private Node root;
+
+    /** The number of keys in the map.
+     */
+    private int size = 0;
+
+    /************************************************************************************
+     * The base class for the nodes of the tree.  An inner node holds its compressed path
+     * (the bytes shared by all keys below it, following the byte that led to it).
+     */
+    private static abstract class Node
+            implements Serializable
+    {
+        byte [] prefix = EMPTY;
+        int     n;                                              // number of children
+
+        /** Return the child for key byte b (null if none). */
+        Node find (int b) { return null; }
+
+        /** Replace the (existing) child for key byte b. */
+        void replace (int b, Node child) { }
+
+        /** Add a child for key byte b, returning this node or a larger one holding it. */
+        Node add (int b, Node child) { return this; }
+
+        /** Visit the children in key byte order, passing each byte and child. */
+        void children (ChildVisitor v) { }
+    } // Node class
+
+    /** The (empty) compressed path of a new node.
+     */
+    private static final byte [] EMPTY = new byte [0];
+
+    /************************************************************************************
+     * A visitor over the children of an inner node.
+     */
+    private interface ChildVisitor
+    {
+        /** Visit the child for key byte b, returning false to stop. */
+        boolean visit (int b, Node child);
+    } // ChildVisitor interface
+
+    /************************************************************************************
+     * A leaf holds a key (with its normalized bytes) and its value.
+     */
+    private static final class Leaf <V>
+            extends Node
+    {
+        final byte [] bytes;
+        final KeyType key;
+        V             value;
+
+        Leaf (byte [] _bytes, KeyType _key, V _value)
+        {
+            bytes = _bytes; key = _key; value = _value;
+        } // constructor
+    } // Leaf class
+
+    /************************************************************************************
+     * An inner node with up to 4 children, kept sorted by key byte.
+     */
+    private static final class Node4
+            extends Node
+    {
+        final int []  keys     = new int [4];
+        final Node [] children = new Node [4];
+
+        Node find (int b)
+        {
+            for (int i = 0; i < n; i++) if (keys [i] == b) return children [i];
+            return null;
+        } // find
+
+        void replace (int b, Node child)
+        {
+            for (int i = 0; i < n; i++) if (keys [i] == b) children [i] = child;
+        } // replace
+
+        Node add (int b, Node child)
+        {
+            if (n == 4) {
+                Node16 big = new Node16 ();
+                big.prefix = prefix;
+                for (int i = 0; i < n; i++) big.add (keys [i], children [i]);
+                return big.add (b, child);
+            } // if
+            int i = n;
+            while (i > 0 && keys [i - 1] > b) { keys [i] = keys [i - 1]; children [i] = children [i - 1]; i--; }
+            keys [i] = b; children [i] = child; n++;
+            return this;
+        } // add
+
+        void children (ChildVisitor v)
+        {
+            for (int i = 0; i < n; i++) if (! v.visit (keys [i], children [i])) return;
+        } // children
+    } // Node4 class
+
+    /************************************************************************************
+     * An inner node with up to 16 children, kept sorted by key byte.
+     */
+    private static final class Node16
+            extends Node
+    {
+        final int []  keys     = new int [16];
+        final Node [] children = new Node [16];
+
+        Node find (int b)
+        {
+            int i = Arrays.binarySearch (keys, 0, n, b);
+            return (i >= 0) ? children [i] : null;
+        } // find
+
+        void replace (int b, Node child)
+        {
+            children [Arrays.binarySearch (keys, 0, n, b)] = child;
+        } // replace
+
+        Node add (int b, Node child)
+        {
+            if (n == 16) {
+                Node48 big = new Node48 ();
+                big.prefix = prefix;
+                for (int i = 0; i < n; i++) big.add (keys [i], children [i]);
+                return big.add (b, child);
+            } // if
+            int i = -1 - Arrays.binarySearch (keys, 0, n, b);
+            System.arraycopy (keys, i, keys, i + 1, n - i);
+            System.arraycopy (children, i, children, i + 1, n - i);
+            keys [i] = b; children [i] = child; n++;
+            return this;
+        } // add
+
+        void children (ChildVisitor v)
+        {
+            for (int i = 0; i < n; i++) if (! v.visit (keys [i], children [i])) return;
+        } // children
+    } // Node16 class
+
+    /************************************************************************************
+     * An inner node with up to 48 children, reached through a 256-entry index holding
+     * the slot (plus one) of the child for each key byte.
+     */
+    private static final class Node48
+            extends Node
+    {
+        final byte [] index    = new byte [256];
+        final Node [] children = new Node [48];
+
+        Node find (int b)
+        {
+            int s = index [b];
+            return (s == 0) ? null : children [s - 1];
+        } // find
+
+        void replace (int b, Node child)
+        {
+            children [index [b] - 1] = child;
+        } // replace
+
+        Node add (int b, Node child)
+        {
+            if (n == 48) {
+                Node256 big = new Node256 ();
+                big.prefix = prefix;
+                for (int c = 0; c < 256; c++) if (index [c] != 0) big.add (c, children [index [c] - 1]);
+                return big.add (b, child);
+            } // if
+            children [n] = child;
+            index [b]    = (byte) ++n;
+            return this;
+        } // add
+
+        void children (ChildVisitor v)
+        {
+            for (int c = 0; c < 256; c++) {
+                if (index [c] != 0 && ! v.visit (c, children [index [c] - 1])) return;
+            } // for
+        } // children
+    } // Node48 class
+
+    /************************************************************************************
+     * An inner node with up to 256 children, indexed directly by key byte.
+     */
+    private static final class Node256
+            extends Node
+    {
+        final Node [] children = new Node [256];
+
+        Node find (int b)
+        {
+            return children [b];
+        } // find
+
+        void replace (int b, Node child)
+        {
+            children [b] = child;
+        } // replace
+
+        Node add (int b, Node child)
+        {
+            children [b] = child; n++;
+            return this;
+        } // add
+
+        void children (ChildVisitor v)
+        {
+            for (int c = 0; c < 256; c++) {
+                if (children [c] != null && ! v.visit (c, children [c])) return;
+            } // for
+        } // children
+    } // Node256 class
+
+    /************************************************************************************
+     * Construct an empty ART map.
+     */
+    public ArtMap ()
+    {
+    } // constructor
+
+    /************************************************************************************
+     * Return null to use the natural order based on the key type.
+     * @return  null
+     */
+    public Comparator <? super KeyType> comparator ()
+    {
+        return null;
+    } // comparator
+
+    /************************************************************************************
+     * Return a set containing all the entries as pairs of keys and values, in key order.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <KeyType, V>> entrySet ()
+    {
+        Set <Map.Entry <KeyType, V>> enSet = new LinkedHashSet <> ();
+        walk (root, leaf -> enSet.add (new AbstractMap.SimpleEntry <> (leaf.key, leaf.value)));
+        return enSet;
+    } // entrySet
+
+    /************************************************************************************
+     * Given the key, look up the value in the ART map.
+     * @param key  the key used for look up
+     * @return  the value associated with the key (null if not found)
+     */
+    @SuppressWarnings("unchecked")
+    public V get (Object key)
+    {
+        byte [] b     = bytesOf ((KeyType) key);
+        Node    n     = root;
+        int     depth = 0;
+        while (n != null) {
+            if (n instanceof Leaf) {
+                Leaf <V> leaf = (Leaf <V>) n;
+                return Arrays.equals (leaf.bytes, b) ? leaf.value : null;
+            } // if
+            byte [] p = n.prefix;
+            if (depth + p.length >= b.length) return null;
+            for (int i = 0; i < p.length; i++) if (p [i] != b [depth + i]) return null;
+            depth += p.length;
+            n = n.find (b [depth++] & 0xff);
+        } // while
+        return null;
+    } // get
+
+    /************************************************************************************
+     * Put the key-value pair in the ART map (replacing the value of an existing key).
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value of the key (null if it is new)
+     */
+    public V put (KeyType key, V value)
+    {
+        V [] old = newHolder ();
+        root = insert (root, new Leaf <> (bytesOf (key), key, value), 0, old);
+        if (old [0] == null) size++;
+        return old [0];
+    } // put
+
+    /************************************************************************************
+     * Return the first (smallest) key in the ART map.
+     * @return  the first key in the ART map
+     */
+    public KeyType firstKey ()
+    {
+        List <KeyType> first = new ArrayList <> (1);
+        walkWhile (root, leaf -> { first.add (leaf.key); return false; });
+        if (first.isEmpty ()) throw new NoSuchElementException ();
+        return first.get (0);
+    } // firstKey
+
+    /************************************************************************************
+     * Return the last (largest) key in the ART map.
+     * @return  the last key in the ART map
+     */
+    @SuppressWarnings("unchecked")
+    public KeyType lastKey ()
+    {
+        Node n = root;
+        if (n == null) throw new NoSuchElementException ();
+        while (! (n instanceof Leaf)) {
+            Node [] last = new Node [1];
+            n.children ((b, child) -> { last [0] = child; return true; });
+            n = last [0];
+        } // while
+        return ((Leaf <V>) n).key;
+    } // lastKey
+
+    /************************************************************************************
+     * Return the portion of the ART map where key < toKey.
+     * @return  the submap with keys in the range [firstKey, toKey)
+     */
+    public SortedMap <KeyType, V> headMap (KeyType toKey)
+    {
+        return subMap (null, true, toKey, false);
+    } // headMap
+
+    /************************************************************************************
+     * Return the portion of the ART map where fromKey <= key.
+     * @return  the submap with keys in the range [fromKey, lastKey]
+     */
+    public SortedMap <KeyType, V> tailMap (KeyType fromKey)
+    {
+        return subMap (fromKey, true, null, true);
+    } // tailMap
+
+    /************************************************************************************
+     * Return the portion of the ART map whose keys are between fromKey and toKey,
+     * i.e., fromKey <= key < toKey.
+     * @return  the submap with keys in the range [fromKey, toKey)
+     */
+    public SortedMap <KeyType, V> subMap (KeyType fromKey, KeyType toKey)
+    {
+        return subMap (fromKey, true, toKey, false);
+    } // subMap
+
+    /************************************************************************************
+     * Return the portion of the ART map whose keys are between fromKey and toKey (a
+     * null bound means unbounded).  Only the subtrees that may hold keys in the range
+     * are visited.
+     * @param fromKey     the lower bound (or null)
+     * @param isInclFrom  whether the lower bound is inclusive
+     * @param toKey       the upper bound (or null)
+     * @param isInclTo    whether the upper bound is inclusive
+     * @return  the submap with keys in the range, in key order
+     */
+    public SortedMap <KeyType, V> subMap (KeyType fromKey, boolean isInclFrom, KeyType toKey, boolean isInclTo)
+    {
+        SortedMap <KeyType, V> submap = new TreeMap <> ();
+        range (fromKey, isInclFrom, toKey, isInclTo, submap::put);
+        return submap;
+    } // subMap
+
+    /************************************************************************************
+     * Visit, in key order, the entries whose keys are between fromKey and toKey (a null
+     * bound means unbounded), walking only the subtrees that may hold keys in the range.
+     * @param fromKey     the lower bound (or null)
+     * @param isInclFrom  whether the lower bound is inclusive
+     * @param toKey       the upper bound (or null)
+     * @param isInclTo    whether the upper bound is inclusive
+     * @param action      the action to apply to each key and value
+     */
+    public void range (KeyType fromKey, boolean isInclFrom, KeyType toKey, boolean isInclTo,
+                       BiConsumer <KeyType, V> action)
+    {
+        byte [] lo = (fromKey == null) ? null : bytesOf (fromKey);
+        byte [] hi = (toKey == null)   ? null : bytesOf (toKey);
+        range (root, 0, lo, isInclFrom, hi, isInclTo, leaf -> action.accept (leaf.key, leaf.value));
+    } // range
+
+    /************************************************************************************
+     * Return the portion of the ART map whose keys start with the given string (the
+     * first key attribute must be a String).  The lookup descends along the bytes of
+     * the prefix and then walks the subtree below it.
+     * @param prefix  the prefix of the (first attribute of the) keys
+     * @return  the submap of keys with the prefix, in key order
+     */
+    @SuppressWarnings("unchecked")
+    public SortedMap <KeyType, V> prefixMap (String prefix)
+    {
+        SortedMap <KeyType, V> submap = new TreeMap <> ();
+        byte []                enc    = KeyEncoder.encode (new Comparable [] { prefix });
+        byte []                p      = Arrays.copyOf (enc, enc.length - 2);   // drop the terminator
+        Node                   n      = root;
+        int                    depth  = 0;
+        while (n != null && depth < p.length) {
+            if (n instanceof Leaf) {
+                Leaf <V> leaf = (Leaf <V>) n;
+                if (leaf.bytes.length >= p.length && KeyEncoder.compare (Arrays.copyOf (leaf.bytes, p.length), p, 0) == 0) {
+                    submap.put (leaf.key, leaf.value);
+                } // if
+                return submap;
+            } // if
+            int m = Math.min (n.prefix.length, p.length - depth);
+            for (int i = 0; i < m; i++) if (n.prefix [i] != p [depth + i]) return submap;
+            depth += n.prefix.length;
+            if (depth >= p.length) break;                        // all keys below share the prefix
+            n = n.find (p [depth++] & 0xff);
+        } // while
+        walk (n, leaf -> submap.put (leaf.key, leaf.value));
+        return submap;
+    } // prefixMap
+
+    /************************************************************************************
+     * Return the size (number of keys) in the ART map.
+     * @return  the size of the ART map
+     */
+    public int size ()
+    {
+        return size;
+    } // size
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the normalized bytes of the given key (encoded keys already carry them).
+     */
+    private static byte [] bytesOf (KeyType key)
+    {
+        return (key instanceof KeyType.EncodedKey) ? ((KeyType.EncodedKey) key).bytes ()
+                                                   : KeyEncoder.encode (key);
+    } // bytesOf
+
+    /************************************************************************************
+     * Make a one-element holder for the previous value of a key.
+     */
+    @SuppressWarnings("unchecked")
+    private V [] newHolder ()
+    {
+        return (V []) new Object [1];
+    } // newHolder
+
+    /************************************************************************************
+     * Insert the leaf into the subtree rooted at n, whose key bytes before depth match
+     * the leaf's.  Return the new root of the subtree (a node may grow or be split on
+     * its compressed path).  The previous value of an existing key goes into old [0].
+     */
+    @SuppressWarnings("unchecked")
+    private Node insert (Node n, Leaf <V> leaf, int depth, V [] old)
+    {
+        byte [] b = leaf.bytes;
+        if (n == null) return leaf;
+
+        if (n instanceof Leaf) {
+            Leaf <V> other = (Leaf <V>) n;
+            if (Arrays.equals (other.bytes, b)) {                 // existing key: replace value
+                old [0]     = other.value;
+                other.value = leaf.value;
+                return other;
+            } // if
+            int i = depth;
+            while (i < b.length && i < other.bytes.length && b [i] == other.bytes [i]) i++;
+            if (i == b.length || i == other.bytes.length) {
+                throw new IllegalArgumentException ("ArtMap.insert: a key is a prefix of another key");
+            } // if
+            Node4 nn = new Node4 ();
+            nn.prefix = Arrays.copyOfRange (b, depth, i);
+            nn.add (other.bytes [i] & 0xff, other);
+            nn.add (b [i] & 0xff, leaf);
+            return nn;
+        } // if
+
+        byte [] p = n.prefix;
+        int     m = 0;                                          // length of the matching path
+        while (m < p.length && depth + m < b.length && p [m] == b [depth + m]) m++;
+        if (m < p.length) {                                     // split the compressed path
+            if (depth + m == b.length) {
+                throw new IllegalArgumentException ("ArtMap.insert: a key is a prefix of another key");
+            } // if
+            Node4 nn = new Node4 ();
+            nn.prefix = Arrays.copyOf (p, m);
+            n.prefix  = Arrays.copyOfRange (p, m + 1, p.length);
+            nn.add (p [m] & 0xff, n);
+            nn.add (b [depth + m] & 0xff, leaf);
+            return nn;
+        } // if
+
+        depth += p.length;
+        if (depth == b.length) {
+            throw new IllegalArgumentException ("ArtMap.insert: a key is a prefix of another key");
+        } // if
+        int  c     = b [depth] & 0xff;
+        Node child = n.find (c);
+        if (child == null) return n.add (c, leaf);
+        Node newChild = insert (child, leaf, depth + 1, old);
+        if (newChild != child) n.replace (c, newChild);
+        return n;
+    } // insert
+
+    /************************************************************************************
+     * Visit the leaves of the subtree rooted at n in key order.
+     */
+    private void walk (Node n, Consumer <Leaf <V>> action)
+    {
+        walkWhile (n, leaf -> { action.accept (leaf); return true; });
+    } // walk
+
+    /************************************************************************************
+     * Visit the leaves of the subtree rooted at n in key order while the visitor returns
+     * true.  Return false if the walk was stopped.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean walkWhile (Node n, java.util.function.Predicate <Leaf <V>> visitor)
+    {
+        if (n == null) return true;
+        if (n instanceof Leaf) return visitor.test ((Leaf <V>) n);
+        boolean [] go = { true };
+        n.children ((c, child) -> go [0] = walkWhile (child, visitor));
+        return go [0];
+    } // walkWhile
+
+    /************************************************************************************
+     * Visit, in key order, the leaves of the subtree rooted at n (reached with depth key
+     * bytes) whose keys lie between lo and hi (a null bound means unbounded).  A bound
+     * is dropped as soon as the path leaves it behind, so subtrees inside the range are
+     * walked without comparisons and subtrees outside it are skipped.
+     */
+    @SuppressWarnings("unchecked")
+    private void range (Node n, int depth, byte [] lo, boolean isInclLo, byte [] hi, boolean isInclHi,
+                        Consumer <Leaf <V>> action)
+    {
+        if (n == null) return;
+        if (n instanceof Leaf) {
+            Leaf <V> leaf = (Leaf <V>) n;
+            if (lo != null) {
+                int cmp = KeyEncoder.compare (leaf.bytes, lo, depth);
+                if (cmp < 0 || cmp == 0 && ! isInclLo) return;
+            } // if
+            if (hi != null) {
+                int cmp = KeyEncoder.compare (leaf.bytes, hi, depth);
+                if (cmp > 0 || cmp == 0 && ! isInclHi) return;
+            } // if
+            action.accept (leaf);
+            return;
+        } // if
+
+        for (byte pb : n.prefix) {                              // compare the compressed path
+            int c = pb & 0xff;
+            if (lo != null) {
+                if (depth >= lo.length || c > (lo [depth] & 0xff)) lo = null;
+                else if (c < (lo [depth] & 0xff)) return;
+            } // if
+            if (hi != null) {
+                if (depth >= hi.length || c > (hi [depth] & 0xff)) return;
+                else if (c < (hi [depth] & 0xff)) hi = null;
+            } // if
+            depth++;
+        } // for
+
+        final byte [] lo0 = lo, hi0 = hi;
+        final int     d   = depth;
+        n.children ((c, child) -> {
+            byte [] cLo = lo0, cHi = hi0;
+            if (cLo != null) {
+                if (d >= cLo.length || c > (cLo [d] & 0xff)) cLo = null;
+                else if (c < (cLo [d] & 0xff)) return true;
+            } // if
+            if (cHi != null) {
+                if (d >= cHi.length || c > (cHi [d] & 0xff)) return false;
+                else if (c < (cHi [d] & 0xff)) cHi = null;
+            } // if
+            range (child, d + 1, cLo, isInclLo, cHi, isInclHi, action);
+            return true;
+        });
+    } // range
+
+    /************************************************************************************
+     * The main method is used for testing purposes only.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        ArtMap <Integer> art = new ArtMap <> ();
+        for (int i = 0; i < 1000; i += 3) art.put (KeyType.of ("crsCode" + i), i);
+        System.out.println ("size = " + art.size ());
+        System.out.println ("get (crsCode99) = " + art.get (KeyType.of ("crsCode99")));
+        System.out.println ("prefix crsCode99 = " + art.prefixMap ("crsCode99").values ());
+        System.out.println ("range [crsCode10, crsCode12] = "
+                            + art.subMap (KeyType.of ("crsCode10"), true, KeyType.of ("crsCode12"), true).values ());
+    } // main
+
+} // ArtMap class
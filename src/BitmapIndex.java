@@ -0,0 +1,92 @@
+
+/****************************************************************************************
+ * @file  BitmapIndex.java
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * This class implements bitmap indexes for low-cardinality attributes (e.g., status,
+ * grade, deptId, semester).  For each distinct value of the attribute, a compressed
+ * (Roaring) bitmap records the row ids (positions within the table) of the tuples
+ * carrying that value, so that conjunctions and disjunctions of equality predicates
+ * can be answered by bitmap operations before any tuple is touched.
+ */
+public class BitmapIndex
+       implements Serializable
+{
+    /** The name of the indexed attribute.
+     */
+    private final String attr;
+
+    /** The column position of the indexed attribute.
+     */
+    private final int col;
+
+    /** The bitmaps (maps each distinct value to the row ids carrying it).
+     */
+    private final Map <Comparable, RoaringBitmap> bitmaps = new HashMap <> ();
+
+    /************************************************************************************
+     * Construct an empty bitmap index on the given attribute.
+     *
+     * @param _attr  the name of the indexed attribute
+     * @param _col   the column position of the indexed attribute
+     */
+    BitmapIndex (String _attr, int _col)
+    {
+        attr = _attr;
+        col  = _col;
+    } // constructor
+
+    /************************************************************************************
+     * Add the given tuple to the index by setting its row id in the bitmap for its value.
+     *
+     * @param tup  the tuple to add
+     * @param rid  the row id (position in the table) of the tuple
+     */
+    void add (Comparable [] tup, int rid)
+    {
+        RoaringBitmap b = bitmaps.get (tup [col]);
+        if (b == null) {
+            b = new RoaringBitmap ();
+            bitmaps.put (tup [col], b);
+        } // if
+        b.add (rid);
+    } // add
+
+    /************************************************************************************
+     * Return the bitmap of the row ids whose attribute equals the given value.  The
+     * returned bitmap must not be modified.
+     *
+     * @param val  the value to look up
+     * @return  the bitmap of matching row ids (empty if there are none)
+     */
+    RoaringBitmap get (Comparable val)
+    {
+        RoaringBitmap b = bitmaps.get (val);
+        return (b == null) ? new RoaringBitmap () : b;
+    } // get
+
+    /************************************************************************************
+     * Return the number of distinct values of the indexed attribute.
+     *
+     * @return  the number of bitmaps in the index
+     */
+    int distinct ()
+    {
+        return bitmaps.size ();
+    } // distinct
+
+    /************************************************************************************
+     * Return the name of the indexed attribute.
+     *
+     * @return  the indexed attribute
+     */
+    String getAttr ()
+    {
+        return attr;
+    } // getAttr
+
+} // BitmapIndex class
@@ -0,0 +1,109 @@
+
+/****************************************************************************************
+ * @file  BloomFilter.java
+ */
+
+import java.io.Serializable;
+
+/****************************************************************************************
+ * This class provides Bloom filters over keys (values of one or more attributes).  A
+ * Bloom filter answers "definitely not present" or "possibly present" using a few bit
+ * probes, so that lookups of absent values (most probes in minus and semi-joins) can
+ * skip the index or table traversal.  The filter is sized for a given capacity at about
+ * 10 bits per key (roughly a 1% false positive rate); once it holds more keys than its
+ * capacity, it should be rebuilt larger.
+ */
+public class BloomFilter
+       implements Serializable
+{
+    /** The number of bits per key.
+     */
+    private static final int BITS_PER_KEY = 10;
+
+    /** The number of hash functions (bit probes) per key.
+     */
+    private static final int HASHES = 7;
+
+    /** The bit array.
+     */
+    private final long [] bits;
+
+    /** The number of bits in the bit array.
+     */
+    private final int nBits;
+
+    /** The number of keys the filter is sized for.
+     */
+    private final int capacity;
+
+    /** The number of keys added.
+     */
+    private int n = 0;
+
+    /************************************************************************************
+     * Construct an empty Bloom filter sized for the given number of keys.
+     *
+     * @param _capacity  the expected number of keys
+     */
+    public BloomFilter (int _capacity)
+    {
+        capacity = Math.max (_capacity, 64);
+        bits     = new long [(int) ((BITS_PER_KEY * (long) capacity + 63) / 64)];
+        nBits    = 64 * bits.length;
+    } // constructor
+
+    /************************************************************************************
+     * Add the given key to the filter.
+     *
+     * @param k  the key to add
+     */
+    public void add (KeyType k)
+    {
+        long h  = k.hashCode () * 0x9e3779b97f4a7c15L;
+        int  h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int b = ((h1 + i * h2) & 0x7fffffff) % nBits;
+            bits [b >>> 6] |= 1L << b;
+        } // for
+        n++;
+    } // add
+
+    /************************************************************************************
+     * Determine whether the given key may be in the filter (false means it definitely
+     * is not).
+     *
+     * @param k  the key to check
+     * @return  whether the key is possibly present
+     */
+    public boolean mightContain (KeyType k)
+    {
+        long h  = k.hashCode () * 0x9e3779b97f4a7c15L;
+        int  h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int b = ((h1 + i * h2) & 0x7fffffff) % nBits;
+            if ((bits [b >>> 6] & (1L << b)) == 0) return false;
+        } // for
+        return true;
+    } // mightContain
+
+    /************************************************************************************
+     * Determine whether the filter holds more keys than it was sized for.
+     *
+     * @return  whether the filter should be rebuilt larger
+     */
+    public boolean isFull ()
+    {
+        return n > capacity;
+    } // isFull
+
+    /************************************************************************************
+     * Return the number of keys the filter was sized for.
+     *
+     * @return  the capacity of the filter
+     */
+    public int capacity ()
+    {
+        return capacity;
+    } // capacity
+
+} // BloomFilter class
@@ -8,6 +8,7 @@ import java.io.*;
 import java.lang.reflect.Array;
 import static java.lang.System.out;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /************************************************************************************
  * This class provides B+Tree maps.  B+Trees are used as multi-level index structures
@@ -15,7 +16,7 @@ import java.util.*;
  */
 public class BpTreeMap <K extends Comparable <K>, V>
 extends AbstractMap <K, V>
-implements Serializable, Cloneable, SortedMap <K, V>
+implements Serializable, Cloneable, SortedMap <K, V>, OrderedIndex <K, V>
 {
     /** The maximum fanout for a B+Tree node.
      */
@@ -122,10 +123,9 @@ implements Serializable, Cloneable, SortedMap <K, V>
         }
         while(temp != null){
             for(int i = 0; i < temp.nKeys; i++){
-                Map.Entry temp1 = (Map.Entry)temp.ref[i];
-                enSet.add(temp1);
+                enSet.add(new AbstractMap.SimpleEntry <K, V> (temp.key[i], (V) temp.ref[i]));
             }
-            //temp = temp.nextLeaf;
+            temp = (Node) temp.ref [ORDER - 1];
         }
 
         return enSet;
@@ -142,6 +142,43 @@ implements Serializable, Cloneable, SortedMap <K, V>
         return find ((K) key, root);
     } // get
 
+    /********************************************************************************
+     * Look up the given keys, which must be in ascending order, storing the value of
+     * keys[i] (or null) in vals[i].  Consecutive keys share the descent to their leaf:
+     * the search stays in the current leaf, or moves on to the next leaf in the chain,
+     * while the key is not beyond it, and only descends from the root otherwise.
+     * @param keys  the keys to look up, in ascending order
+     * @param vals  the array to receive the values
+     */
+    @SuppressWarnings("unchecked")
+    public void getAll (K [] keys, Object [] vals)
+    {
+        Node leaf = null;
+        for (int i = 0; i < keys.length; i++) {
+            K k = keys [i];
+            if (leaf != null && leaf.nKeys > 0 && k.compareTo (leaf.key [leaf.nKeys - 1]) > 0) {
+                Node next = (Node) leaf.ref [ORDER - 1];
+                leaf = (next != null && next.nKeys > 0 && k.compareTo (next.key [next.nKeys - 1]) <= 0) ? next : null;
+            } // if
+            if (leaf == null) {                                 // descend from the root
+                leaf = root;
+                while (! leaf.isLeaf) {
+                    count++;
+                    int pos = 0;
+                    while (pos < leaf.nKeys && leaf.key [pos].compareTo (k) <= 0) pos++;
+                    leaf = (Node) leaf.ref [pos];
+                } // while
+            } // if
+            count++;
+            vals [i] = null;
+            for (int j = 0; j < leaf.nKeys; j++) {
+                int cmp = k.compareTo (leaf.key [j]);
+                if (cmp == 0) vals [i] = leaf.ref [j];
+                if (cmp <= 0) break;
+            } // for
+        } // for
+    } // getAll
+
     /********************************************************************************
      * Put the key-value pair in the B+Tree map.
      * @param key    the key to insert
@@ -154,6 +191,57 @@ implements Serializable, Cloneable, SortedMap <K, V>
         return null;
     } // put
 
+    /********************************************************************************
+     * Bulk load the (empty) B+Tree map from keys in strictly ascending order, building
+     * it bottom-up: full leaves are filled left to right and chained, then each level
+     * of internal nodes is built over the one below, with the first key of each child
+     * subtree (except the first) as its divider.
+     * @param keys  the keys in strictly ascending order
+     * @param vals  the values of the keys
+     */
+    @SuppressWarnings("unchecked")
+    public void bulkLoad (K [] keys, V [] vals)
+    {
+        if (keys.length == 0) return;
+        List <Node> level = new ArrayList <> ();                // nodes of the current level
+        List <K>    first = new ArrayList <> ();                // smallest key below each node
+        Node        prev  = null;
+        for (int i = 0; i < keys.length; i += ORDER - 1) {
+            Node leaf = new Node (true);
+            for (int j = i; j < Math.min (i + ORDER - 1, keys.length); j++) {
+                leaf.key [leaf.nKeys] = keys [j];
+                leaf.ref [leaf.nKeys++] = vals [j];
+            } // for
+            if (prev != null) prev.ref [ORDER - 1] = leaf;
+            prev = leaf;
+            level.add (leaf);
+            first.add (keys [i]);
+        } // for
+
+        while (level.size () > 1) {
+            List <Node> upper  = new ArrayList <> ();
+            List <K>    uFirst = new ArrayList <> ();
+            int         m      = level.size ();
+            for (int i = 0; i < m; ) {
+                int take = Math.min (ORDER, m - i);
+                if (m - i - take == 1) take--;                  // leave at least 2 children for the last node
+                Node n = new Node (false);
+                n.ref [0] = level.get (i);
+                for (int j = 1; j < take; j++) {
+                    n.key [n.nKeys++] = first.get (i + j);
+                    n.ref [j]         = level.get (i + j);
+                } // for
+                upper.add (n);
+                uFirst.add (first.get (i));
+                i += take;
+            } // for
+            level = upper;
+            first = uFirst;
+        } // while
+        root = level.get (0);
+        size = keys.length;
+    } // bulkLoad
+
     /********************************************************************************
      * Return the first (smallest) key in the B+Tree map.
      * @return  the first key in the B+Tree map.
@@ -193,7 +281,8 @@ implements Serializable, Cloneable, SortedMap <K, V>
      */
     public SortedMap <K,V> headMap (K toKey)
     {
-        SortedMap <K, V> headMap = subMap(firstKey(), toKey);
+        SortedMap <K, V> headMap = new TreeMap <> ();
+        range (null, true, toKey, false, headMap::put);
         return headMap;
     } // headMap
 
@@ -203,11 +292,8 @@ implements Serializable, Cloneable, SortedMap <K, V>
      */
     public SortedMap <K,V> tailMap (K fromKey)
     {
-        SortedMap <K, V> tailMap = subMap(fromKey, lastKey());
-        if(fromKey.compareTo(lastKey()) <= 0){
-            tailMap.put(lastKey(), get(lastKey()));
-        }
-
+        SortedMap <K, V> tailMap = new TreeMap <> ();
+        range (fromKey, true, null, true, tailMap::put);
         return tailMap;
     } // tailMap
 
@@ -218,27 +304,48 @@ implements Serializable, Cloneable, SortedMap <K, V>
      */
     public SortedMap <K,V> subMap (K fromKey, K toKey)
     {
-        SortedMap<K, V> submap = new TreeMap<>();
-        Node node = root;
-
-            //first leaf
-        while (!node.isLeaf){
-            node = (Node) node.ref[0];
-        }
-
-        while (node != null){
-            for (int i = 0; i < node.nKeys; i++){
-                if(fromKey.compareTo(node.key[i]) <= 0 && toKey.compareTo(node.key[i]) > 0)
-                {
-                    submap.put(node.key[i], (V) node.ref[i]);
-                }
-            }
-            node = (Node) node.ref[ORDER-1];
-        }
-
+        SortedMap <K, V> submap = new TreeMap <> ();
+        range (fromKey, true, toKey, false, submap::put);
         return submap;
     } // subMap
 
+    /********************************************************************************
+     * Visit, in key order, the entries whose keys are between fromKey and toKey (a null
+     * bound means unbounded).  The search descends to the leaf that may hold fromKey
+     * and then follows the leaf chain until it passes toKey.
+     * @param fromKey     the lower bound (or null)
+     * @param isInclFrom  whether the lower bound is inclusive
+     * @param toKey       the upper bound (or null)
+     * @param isInclTo    whether the upper bound is inclusive
+     * @param action      the action to apply to each key and value
+     */
+    @SuppressWarnings("unchecked")
+    public void range (K fromKey, boolean isInclFrom, K toKey, boolean isInclTo, BiConsumer <K, V> action)
+    {
+        Node n = root;
+        while (! n.isLeaf) {
+            int pos = 0;
+            if (fromKey != null) {
+                while (pos < n.nKeys && n.key [pos].compareTo (fromKey) <= 0) pos++;
+            } // if
+            n = (Node) n.ref [pos];
+        } // while: n is the leaf where the range starts
+
+        for ( ; n != null; n = (Node) n.ref [ORDER - 1]) {
+            for (int i = 0; i < n.nKeys; i++) {
+                if (fromKey != null) {
+                    int cmp = n.key [i].compareTo (fromKey);
+                    if (cmp < 0 || cmp == 0 && ! isInclFrom) continue;
+                } // if
+                if (toKey != null) {
+                    int cmp = n.key [i].compareTo (toKey);
+                    if (cmp > 0 || cmp == 0 && ! isInclTo) return;
+                } // if
+                action.accept (n.key [i], (V) n.ref [i]);
+            } // for
+        } // for
+    } // range
+
     /********************************************************************************
      * Return the size (number of keys) in the B+Tree.
      * @return  the size of the B+Tree
@@ -273,7 +380,9 @@ implements Serializable, Cloneable, SortedMap <K, V>
     } // print
 
     /********************************************************************************
-     * Recursive helper function for finding a key in B+trees.
+     * Recursive helper function for finding a key in B+trees.  Internal nodes route
+     * keys equal to a divider to the right, since dividers are copied up from the
+     * first key of the right sibling.
      * @param key  the key to find
      * @param ney  the current node
      */
@@ -283,12 +392,10 @@ implements Serializable, Cloneable, SortedMap <K, V>
         count++;
         for (int i = 0; i < n.nKeys; i++) {
             K k_i = n.key [i];
-            if (key <= k_i) {
-                if (n.isLeaf) {
-                    return (key.equals (k_i)) ? (V) n.ref [i] : null;
-                } else {
-                    return find (key, (Node) n.ref [i]);
-                } // if
+            if (n.isLeaf) {
+                if (key.compareTo (k_i) == 0) return (V) n.ref [i];
+            } else if (key.compareTo (k_i) < 0) {
+                return find (key, (Node) n.ref [i]);
             } // if
         } // for
         return (n.isLeaf) ? null : find (key, (Node) n.ref [n.nKeys]);
@@ -302,165 +409,155 @@ implements Serializable, Cloneable, SortedMap <K, V>
      * @param p    the parent node
      * @author Minh Pham: do not use recursive
      */
+    @SuppressWarnings("unchecked")
     private void insert (K key, V ref, Node n, Node p)
     {
-       int pos=0;
-           Stack<Node> myStack = new Stack();                   // use stack to store the path from root to the leaf node being inserted key and ref
-           while(!n.isLeaf){
-            pos=0;
-            while(pos<n.nKeys && n.key[pos].compareTo(key)<=0) pos++;
-            p = n;
-            myStack.add(p);
-            n = (Node) n.ref[pos];          
-        }// after while loop: n points to a leaf
-        
-        pos=0;
-        while(pos<n.nKeys && n.key[pos].compareTo(key)<0) pos++;
-        // get position to insert
-
-        if(pos<n.nKeys && n.key[pos].compareTo(key)==0){
-          System.out.println ("BpTree:insert: attempt to insert duplicate key = " + key);
-          n.ref[pos]=ref;
-          return;
-      }
-
-    // check number of entries
-        if(n.nKeys==ORDER-1){                                   // n has ORDER-1 entries -> insertion causes node n splitting
-            Node newNode = split(key, ref, n);
-            
-            if(p==null);                                        // case: n points to root -> create new root
-            else if(p.nKeys<ORDER-1){                           // no need to split parent node, just insert the entry to parent node
-                pos=0;
-                while(pos<p.nKeys && p.key[pos].compareTo(key)<=0) pos++;   
-                wedge(newNode.key[0], (V)newNode, p, pos);
-            }
-            else{                                               // parent node need splitting
-                do{                                             // while loop to split nodes recursively from leaf back to root if needed
-                    p=myStack.pop();
-                    Node aNode = split(newNode.key[0],(V)newNode, p);
-                    newNode=aNode;
-                }
-                while(!myStack.isEmpty() && myStack.peek().nKeys==ORDER-1);
+        int pos = 0;
+        Stack <Node> myStack = new Stack <> ();               // use stack to store the path from root to the leaf node being inserted key and ref
+        while (! n.isLeaf) {
+            pos = 0;
+            while (pos < n.nKeys && n.key [pos].compareTo (key) <= 0) pos++;
+            myStack.push (n);
+            n = (Node) n.ref [pos];
+        } // while: n points to a leaf
+
+        pos = 0;
+        while (pos < n.nKeys && n.key [pos].compareTo (key) < 0) pos++;     // get position to insert
+
+        if (pos < n.nKeys && n.key [pos].compareTo (key) == 0) {
+            System.out.println ("BpTree:insert: attempt to insert duplicate key = " + key);
+            n.ref [pos] = ref;
+            return;
+        } // if
+        size++;
 
-                if(!myStack.isEmpty()){                         // node p is not full, just insert key and ref to this node                         
-                    p = myStack.pop();
-                    pos=0;                                      
-                    while(pos<p.nKeys && p.key[pos].compareTo(key)<=0) pos++;
-                    wedge(newNode.key[0], (V)newNode,p,pos);
-                }
-            }
-        }       
-        // n has fewer entries than ORDER-1
-        else wedge(key, ref, n, pos);
-    } // insert
+        if (n.nKeys < ORDER - 1) {                             // room in the leaf, no split needed
+            wedge (key, ref, n, pos);
+            return;
+        } // if
 
+        Node newNode = split (key, ref, n, pos);               // n has ORDER-1 entries -> split it
+        K    divider = newNode.key [0];                        // copy up the first key of the new leaf
+
+        while (true) {
+            if (myStack.isEmpty ()) {                          // case: n is the root -> create new root
+                Node newRoot = new Node (false);
+                newRoot.ref [0] = n;
+                wedge (divider, (V) newNode, newRoot, 0);
+                root = newRoot;
+                return;
+            } // if
+            p   = myStack.pop ();
+            pos = 0;
+            while (pos < p.nKeys && p.key [pos].compareTo (divider) <= 0) pos++;
+            if (p.nKeys < ORDER - 1) {                         // parent has room, just insert the divider
+                wedge (divider, (V) newNode, p, pos);
+                return;
+            } // if
+            K [] up = (K []) Array.newInstance (classK, 1);   // parent is full -> split it and move up
+            newNode = splitInternal (divider, newNode, p, pos, up);
+            divider = up [0];
+            n       = p;
+        } // while
+    } // insert
 
    /***************************************************************************
-     * Wedge the key-ref pair into node n.
+     * Wedge the key-ref pair into node n.  The node must have room for it.
      * @param key  the key to insert
      * @param ref  the value/node to insert
      * @param n    the current node
      * @param i    the insertion position within node n
      * @author Minh Pham: modify wedge() to compatible with my codes
      */
-   private void wedge (K key, V ref, Node n, int i)
-   {
-    if(n.isLeaf){
-        for (int j = n.nKeys; j > i; j--) {
-           if (j > 0){
-            n.key [j] = n.key [j - 1];
-            n.ref [j] = n.ref [j - 1];
-        }
-                } // for
+    private void wedge (K key, V ref, Node n, int i)
+    {
+        if (n.isLeaf) {
+            for (int j = n.nKeys; j > i; j--) {
+                n.key [j] = n.key [j - 1];
+                n.ref [j] = n.ref [j - 1];
+            } // for
             n.ref [i] = ref;
-        }
-        else{
+        } else {
             for (int j = n.nKeys; j > i; j--) {
-                if (j > 0){
-                    n.key [j] = n.key [j - 1];
-                    n.ref [j+1] = n.ref [j];
-                }
+                n.key [j]     = n.key [j - 1];
+                n.ref [j + 1] = n.ref [j];
             } // for
-            n.ref [i+1] = ref;
-        }
+            n.ref [i + 1] = ref;
+        } // if
         n.key [i] = key;
         n.nKeys++;
-        
-        if(ref.getClass().toString().equals("class BpTree$Node") && !((Node)ref).isLeaf){
-           for(int j=0; j<((Node)ref).nKeys-1; j++){
-            ((Node)ref).key[j]=((Node)ref).key[j+1];
-            ((Node)ref).ref[j]=((Node)ref).ref[j+1];
-        }
-        ((Node)ref).ref[((Node)ref).nKeys-1]=((Node)ref).ref[((Node)ref).nKeys];
-        ((Node)ref).nKeys--;
-    }
     } // wedge
 
     /***************************************************************************
-     * Split node n and return the newly created node.
+     * Split full leaf n while inserting the key-ref pair at position pos and
+     * return the newly created right sibling.  The leaves stay chained through
+     * their last reference slot.
      * @param key  the key to insert
-     * @param ref  the value/node to insert
-     * @param n    the current node
+     * @param ref  the value to insert
+     * @param n    the current (full) leaf
+     * @param pos  the insertion position within leaf n
      * @author Minh Pham
      */
-    private Node split (K key, V ref, Node n)
+    @SuppressWarnings("unchecked")
+    private Node split (K key, V ref, Node n, int pos)
     {
-        Node newNode = new Node(n.isLeaf);
-        // find the position to insert
-        int pos=0;
-        while(pos<ORDER-1 && key.compareTo(n.key[pos])>0){
-           pos++;
-       }
-        int mid = ORDER/2;          // mid of node n
-
-        // key is on the left within node n
-        if(pos<mid){
-            if(ORDER%2==0) mid--;
-            
-            // copy to newnode
-            for(int i=0; i< ORDER/2; i++){
-                newNode.key[i] = n.key[mid+i];
-                newNode.ref[i] = n.ref[mid+i];
-            }
-            newNode.ref[ORDER/2]=n.ref[ORDER-1];
-            n.nKeys=mid;
-            newNode.nKeys=ORDER/2;
-            
-            wedge(key, ref, n, pos);                // insert key and ref to node n
-        }
-        else{
-            if(ORDER%2==1) mid++;
-            n.nKeys=mid;
-            pos-=mid;
-
-            // copy to new node
-            for(int i=0; i< (ORDER-2)/2; i++){
-                newNode.key[i] = n.key[mid+i];
-                newNode.ref[i] = n.ref[mid+i];
-            }
-            newNode.ref[(ORDER-2)/2]=n.ref[ORDER-1];
-            newNode.nKeys=(ORDER-2)/2;
-            
-            // insert key and ref to the new node
-            if (pos >= 0){
-                wedge(key, ref, newNode, pos);    
-            }      
-            else if(pos == -1){
-                wedge(key, ref, newNode, 0);  
-            }    
-        }
+        K []      keys = (K []) Array.newInstance (classK, ORDER);
+        Object [] refs = new Object [ORDER];
+        for (int i = 0, j = 0; i < ORDER; i++) {
+            if (i == pos) { keys [i] = key; refs [i] = ref; }
+            else          { keys [i] = n.key [j]; refs [i] = n.ref [j]; j++; }
+        } // for
 
-        // splitting the root causes creating newRoot
-        if(n==root){
-            Node newRoot = new Node(false);
-            newRoot.ref[0]=n;
-            wedge(newNode.key[0], (V) newNode, newRoot, 0);
-            root =newRoot;
-        }
-        
+        int  mid     = (ORDER + 1) / 2;                         // number of keys staying in n
+        Node newNode = new Node (true);
+        for (int i = 0; i < ORDER; i++) {
+            if (i < mid) { n.key [i] = keys [i]; n.ref [i] = refs [i]; }
+            else         { newNode.key [i - mid] = keys [i]; newNode.ref [i - mid] = refs [i]; }
+        } // for
+        for (int i = mid; i < ORDER - 1; i++) { n.key [i] = null; n.ref [i] = null; }
+        n.nKeys       = mid;
+        newNode.nKeys = ORDER - mid;
+
+        newNode.ref [ORDER - 1] = n.ref [ORDER - 1];           // link the leaves
+        n.ref [ORDER - 1]       = newNode;
         return newNode;
     } // split
 
+    /***************************************************************************
+     * Split full internal node n while inserting the divider key (with child ref
+     * to its right) at position pos and return the newly created right sibling.
+     * The middle key is moved up to the parent and returned through up [0].
+     * @param key  the divider key to insert
+     * @param ref  the child node to the right of the divider
+     * @param n    the current (full) internal node
+     * @param pos  the insertion position within node n
+     * @param up   holder for the key moved up to the parent
+     */
+    @SuppressWarnings("unchecked")
+    private Node splitInternal (K key, Node ref, Node n, int pos, K [] up)
+    {
+        K []      keys = (K []) Array.newInstance (classK, ORDER);
+        Object [] refs = new Object [ORDER + 1];
+        refs [0] = n.ref [0];
+        for (int i = 0, j = 0; i < ORDER; i++) {
+            if (i == pos) { keys [i] = key; refs [i + 1] = ref; }
+            else          { keys [i] = n.key [j]; refs [i + 1] = n.ref [j + 1]; j++; }
+        } // for
+
+        int  mid     = ORDER / 2;                               // position of the key moving up
+        Node newNode = new Node (false);
+        for (int i = 0; i < mid; i++) n.key [i] = keys [i];
+        for (int i = 0; i <= mid; i++) n.ref [i] = refs [i];
+        for (int i = mid; i < ORDER - 1; i++) { n.key [i] = null; n.ref [i + 1] = null; }
+        for (int i = mid + 1; i < ORDER; i++) newNode.key [i - mid - 1] = keys [i];
+        for (int i = mid + 1; i <= ORDER; i++) newNode.ref [i - mid - 1] = refs [i];
+        n.nKeys       = mid;
+        newNode.nKeys = ORDER - mid - 1;
+
+        up [0] = keys [mid];
+        return newNode;
+    } // splitInternal
+
     /********************************************************************************
      * The main method used for testing.
      * @param  the command-line arguments (args [0] gives number of keys to insert)
@@ -477,6 +574,22 @@ implements Serializable, Cloneable, SortedMap <K, V>
         } // for
         out.println ("-------------------------------------------");
         out.println ("Average number of nodes accessed = " + bpt.count / (double) totKeys);
+
+        out.println ("-------------------------------------------");
+        out.println ("Check leaf and internal splits against a TreeMap");
+        BpTreeMap <Integer, Integer> big = new BpTreeMap <> (Integer.class, Integer.class);
+        TreeMap <Integer, Integer>   ref = new TreeMap <> ();
+        Random                       rng = new Random (1);
+        for (int i = 0; i < 20000; i++) {
+            int k = rng.nextInt (10000);                        // repeated keys replace their values
+            big.put (k, i);
+            ref.put (k, i);
+        } // for
+        boolean ok = big.size () == ref.size ();
+        for (int k = -1; k <= 10000; k++) ok &= Objects.equals (big.get (k), ref.get (k));
+        out.println ("get matches: " + ok);
+        out.println ("leaf chain holds every entry: " + big.entrySet ().equals (new HashSet <> (ref.entrySet ())));
+        out.println ("subMap matches: " + big.subMap (2500, 7500).equals (ref.subMap (2500, 7500)));
     } // main
 
 } // BpTreeMap class
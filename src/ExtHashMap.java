@@ -120,7 +120,7 @@ public class ExtHashMap <K, V>
 
         if (b != null) {
             for (int j = 0; j < b.nKeys; j++) {
-                if (b.key[j].hashCode() == key.hashCode()) {
+                if (b.key[j].equals(key)) {
                     return b.value[j];
                 }
             }
@@ -142,6 +142,14 @@ public class ExtHashMap <K, V>
         Bucket b = dir.get(i);
         count++;
 
+        // If the key is already present, then replace its value
+        for (int j = 0; j < b.nKeys; j++) {
+            if (b.key[j].equals(key)) {
+                b.value[j] = value;
+                return null;
+            }
+        }
+
         // If bucket is not full, then add key and value to bucket
         if(b.nKeys < SLOTS){
             insert(b, key, value);
@@ -200,13 +208,7 @@ public class ExtHashMap <K, V>
             // TODO: why does this work?
             int k = 0;
             while(r < mod) {
-                if (k % 2 == 0) {
-                    dir.remove(r);
-                    dir.add(r, bucket_0);
-                }else {
-                    dir.remove(r);
-                    dir.add(r, bucket_1);
-                }
+                dir.set(r, (k % 2 == 0) ? bucket_0 : bucket_1);
                 k++;
                 r = r + oldDepth;
             }
@@ -295,6 +297,21 @@ public class ExtHashMap <K, V>
         } // for
         out.println ("-------------------------------------------");
         out.println ("Average number of buckets accessed = " + ht.count / (double) nKeys);
+
+        out.println ("-------------------------------------------");
+        out.println ("Check bucket splits and directory doubling against a HashMap");
+        ExtHashMap <Integer, Integer> big = new ExtHashMap <> (Integer.class, Integer.class, 4);
+        HashMap <Integer, Integer>    ref = new HashMap <> ();
+        Random                        rng = new Random (1);
+        for (int i = 0; i < 20000; i++) {
+            int k = (i % 10 == 0) ? 1024 * rng.nextInt (64) : rng.nextInt (10000);   // some keys collide
+            big.put (k, i);
+            ref.put (k, i);
+        } // for
+        boolean ok = true;
+        for (int k = 0; k <= 70000; k++) ok &= Objects.equals (big.get (k), ref.get (k));
+        out.println ("get matches: " + ok);
+        out.println ("buckets hold every entry: " + big.entrySet ().equals (new HashSet <> (ref.entrySet ())));
     } // main
 
 } // ExtHashMap class
@@ -0,0 +1,207 @@
+
+/****************************************************************************************
+ * @file  ExternalSort.java
+ */
+
+import java.util.*;
+
+/****************************************************************************************
+ * This class sorts lists of tuples that need not fit in memory (external merge sort).
+ * A list of at most memory tuples is sorted in memory.  A larger one is split into
+ * sorted runs by replacement selection, each written to a RunFile, and the runs are
+ * merged k-way through a priority queue holding the current tuple of each run.  The
+ * sorted tuples are streamed from the merge, so they are never all in memory at once.
+ * The first k tuples in order (Top-N) are found with a heap of k tuples instead.
+ */
+public class ExternalSort
+{
+    /************************************************************************************
+     * Sort the given tuples into the order given by the comparator.  The sort is stable.
+     *
+     * @param rows    the tuples to sort
+     * @param cmp     the order to sort into
+     * @param memory  the number of tuples that may be held in memory
+     * @return  an iterator over the tuples in sorted order
+     */
+    static Iterator <Comparable []> sort (List <Comparable []> rows, Comparator <Comparable []> cmp, int memory)
+    {
+        if (rows.size () <= memory) {
+            Comparable [][] a = rows.toArray (new Comparable [0][]);
+            Arrays.sort (a, cmp);
+            return Arrays.asList (a).iterator ();
+        } // if
+
+        return merge (runs (rows.iterator (), cmp, memory), cmp);
+    } // sort
+
+    /************************************************************************************
+     * Split the input into sorted runs by replacement selection: a heap of memory tuples
+     * repeatedly writes its smallest tuple to the current run and takes in the next
+     * input tuple, which joins the current run if it does not precede the tuple just
+     * written and waits for the next run otherwise.  On random input the runs average
+     * twice the memory; input that is already (nearly) sorted gives a single run.  Ties
+     * are broken by input position, so merging the runs in order keeps the sort stable.
+     *
+     * @param in      the input tuples
+     * @param cmp     the order of the runs
+     * @param memory  the number of tuples that may be held in memory
+     * @return  the sorted runs, in the order they were written
+     */
+    private static List <RunFile> runs (Iterator <Comparable []> in, Comparator <Comparable []> cmp, int memory)
+    {
+        PriorityQueue <Entry> heap = new PriorityQueue <> (memory, (a, b) -> {
+            if (a.run != b.run) return Integer.compare (a.run, b.run);
+            int c = cmp.compare (a.tup, b.tup);
+            return (c != 0) ? c : Long.compare (a.seq, b.seq);
+        });
+        long seq = 0;
+        while (heap.size () < memory && in.hasNext ()) heap.add (new Entry (in.next (), 0, seq++));
+
+        List <RunFile> runs = new ArrayList <> ();
+        RunFile        cur  = null;
+        while (! heap.isEmpty ()) {
+            Entry e = heap.remove ();
+            if (e.run == runs.size ()) runs.add (cur = new RunFile ());
+            cur.add (e.tup);
+            if (in.hasNext ()) {                                // reuse the entry for the next tuple
+                Comparable [] tup = in.next ();
+                e.run = (cmp.compare (tup, e.tup) >= 0) ? e.run : e.run + 1;
+                e.tup = tup;
+                e.seq = seq++;
+                heap.add (e);
+            } // if
+        } // while
+        return runs;
+    } // runs
+
+    /************************************************************************************
+     * Return the first k tuples in the order given by the comparator (Top-N), keeping
+     * only the best k tuples seen so far in a heap whose root is the worst of them, so
+     * the rest of the tuples are never sorted.  Ties keep the input order.
+     *
+     * @param rows  the tuples to choose from
+     * @param cmp   the order to choose by
+     * @param k     the number of tuples to return
+     * @return  the first k tuples (all if there are fewer) in sorted order
+     */
+    static List <Comparable []> top (List <Comparable []> rows, Comparator <Comparable []> cmp, int k)
+    {
+        Comparator <Entry> order = (a, b) -> {
+            int c = cmp.compare (a.tup, b.tup);
+            return (c != 0) ? c : Long.compare (a.seq, b.seq);
+        };
+        PriorityQueue <Entry> heap = new PriorityQueue <> (Math.max (1, Math.min (k, rows.size ())), order.reversed ());
+        long seq = 0;
+        for (Comparable [] tup : rows) {
+            if (heap.size () < k) {
+                heap.add (new Entry (tup, 0, seq));
+            } else if (k > 0 && cmp.compare (tup, heap.peek ().tup) < 0) {
+                Entry e = heap.remove ();                       // replace the worst of the best k
+                e.tup = tup;
+                e.seq = seq;
+                heap.add (e);
+            } // if
+            seq++;
+        } // for
+
+        Entry [] best = heap.toArray (new Entry [0]);
+        Arrays.sort (best, order);
+        List <Comparable []> result = new ArrayList <> (best.length);
+        for (Entry e : best) result.add (e.tup);
+        return result;
+    } // top
+
+    /************************************************************************************
+     * Merge the given sorted runs into one sorted stream, deleting each run once it has
+     * been read.  Ties are taken from the earlier run first, which keeps the sort stable.
+     *
+     * @param runs  the sorted runs
+     * @param cmp   the order of the runs
+     * @return  an iterator over the merged tuples
+     */
+    static Iterator <Comparable []> merge (List <RunFile> runs, Comparator <Comparable []> cmp)
+    {
+        PriorityQueue <Cursor> heap = new PriorityQueue <> (Math.max (1, runs.size ()), (a, b) -> {
+            int c = cmp.compare (a.head, b.head);
+            return (c != 0) ? c : Integer.compare (a.run, b.run);
+        });
+        for (int r = 0; r < runs.size (); r++) {
+            Cursor cur = new Cursor (runs.get (r), r);
+            if (cur.advance ()) heap.add (cur);
+        } // for
+
+        return new Iterator <Comparable []> () {
+            public boolean hasNext ()
+            {
+                return ! heap.isEmpty ();
+            } // hasNext
+
+            public Comparable [] next ()
+            {
+                Cursor        cur = heap.remove ();
+                Comparable [] tup = cur.head;
+                if (cur.advance ()) heap.add (cur);
+                return tup;
+            } // next
+        };
+    } // merge
+
+    /************************************************************************************
+     * A tuple in the heap of run generation or Top-N, with the run it belongs to and its
+     * position in the input.
+     */
+    private static class Entry
+    {
+        private Comparable [] tup;
+        private int           run;
+        private long          seq;
+
+        Entry (Comparable [] _tup, int _run, long _seq)
+        {
+            tup = _tup;
+            run = _run;
+            seq = _seq;
+        } // constructor
+
+    } // Entry class
+
+    /************************************************************************************
+     * The read position in one run of a merge.
+     */
+    private static class Cursor
+    {
+        /** The run being read and its iterator.
+         */
+        private final RunFile                  file;
+        private final Iterator <Comparable []> it;
+
+        /** The number of the run (its order among the runs).
+         */
+        private final int run;
+
+        /** The current (smallest unread) tuple of the run.
+         */
+        private Comparable [] head;
+
+        Cursor (RunFile _file, int _run)
+        {
+            file = _file;
+            it   = file.iterator ();
+            run  = _run;
+        } // constructor
+
+        /** Move to the next tuple of the run, deleting the run once it is exhausted.
+         */
+        boolean advance ()
+        {
+            if (it.hasNext ()) {
+                head = it.next ();
+                return true;
+            } // if
+            file.close ();
+            return false;
+        } // advance
+
+    } // Cursor class
+
+} // ExternalSort class
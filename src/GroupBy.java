@@ -0,0 +1,45 @@
+
+/****************************************************************************************
+ * @file  GroupBy.java
+ */
+
+/****************************************************************************************
+ * This class represents a table grouped by some of its attributes (see Table.groupBy),
+ * waiting for the aggregates to compute per group.
+ *
+ * #usage transcript.groupBy ("crsCode").aggregate ("count(*) max(grade)")
+ */
+public class GroupBy
+{
+    /** The table being grouped.
+     */
+    private final Table table;
+
+    /** The attributes to group by.
+     */
+    private final String attributes;
+
+    /************************************************************************************
+     * Construct a grouping of the given table by the given attributes.
+     *
+     * @param _table       the table to group
+     * @param _attributes  the attributes to group by (none for a single group)
+     */
+    GroupBy (Table _table, String _attributes)
+    {
+        table      = _table;
+        attributes = _attributes;
+    } // constructor
+
+    /************************************************************************************
+     * Compute the given aggregates per group (see Table.aggregate).
+     *
+     * @param aggregates  the aggregates, e.g., "count(*) avg(year)"
+     * @return  a table of the aggregates per group
+     */
+    public Table aggregate (String aggregates)
+    {
+        return table.aggregate (attributes, aggregates);
+    } // aggregate
+
+} // GroupBy class
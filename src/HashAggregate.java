@@ -0,0 +1,374 @@
+
+/****************************************************************************************
+ * @file  HashAggregate.java
+ */
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/****************************************************************************************
+ * This class performs hash aggregation (GROUP BY with COUNT, SUM, MIN, MAX and AVG) of
+ * a list of tuples within a memory budget given as a number of groups.  Groups are kept
+ * in an open addressing hash table whose accumulators are primitive arrays indexed by
+ * group number (counts and integer sums in longs, other sums in doubles), so adding a
+ * tuple to an existing group allocates nothing.
+ *
+ * A large input is split into chunks that are aggregated in parallel on the fork-join
+ * pool into partial aggregates, which are then combined.  An aggregator holding more
+ * groups than its budget spills the partial aggregates (states) of all its groups to
+ * run files partitioned by a hash of the group, and starts over; matching states fall
+ * into partitions with the same number, so each partition is then combined on its own,
+ * partitioning again with a different hash function while it is still too large (up
+ * to MAX_LEVEL times).
+ */
+class HashAggregate
+{
+    /** The aggregate functions, and their names.
+     */
+    static final int COUNT = 0, SUM = 1, MIN = 2, MAX = 3, AVG = 4;
+    static final List <String> FUNCTIONS = Arrays.asList ("count", "sum", "min", "max", "avg");
+
+    /** The maximum depth of repartitioning.
+     */
+    private static final int MAX_LEVEL = 4;
+
+    /** The number of partitions a spilling aggregator writes.
+     */
+    private static final int FANOUT = 16;
+
+    /** The minimum number of tuples worth aggregating in a task of its own.
+     */
+    private static final int CHUNK = 1 << 14;
+
+    /** The aggregate function of each aggregate, the column it applies to (-1 for
+     *  COUNT (*)), and whether its sum is kept in a long.
+     */
+    private final int []     fns, aCols;
+    private final boolean [] isLong;
+
+    /** The number of group columns, and the positions of the group and state columns
+     *  in a state tuple.
+     */
+    private final int    nKey;
+    private final int [] kCols;
+
+    /** The partitioning depth and the number of groups that may be held in memory.
+     */
+    private final int level, budget;
+
+    /** The hash table: group number + 1 per slot (0 marks an empty slot).
+     */
+    private int [] slots;
+
+    /** The values and hash code of each group's grouping columns.
+     */
+    private Comparable [][] keys;
+    private int []          hashes;
+
+    /** The accumulators, per aggregate and group (null for those it does not use).
+     */
+    private final long [][]       cnt, lsum;
+    private final double [][]     dsum;
+    private final Comparable [][] ext;
+
+    /** The number of groups.
+     */
+    private int n = 0;
+
+    /** The run files holding the spilled states of each partition (null until the
+     *  first spill), and the one this aggregator writes to.
+     */
+    private List <List <RunFile>> runs;
+    private RunFile []            own;
+
+    /************************************************************************************
+     * Construct an empty aggregator.
+     */
+    private HashAggregate (int _nKey, int [] _fns, int [] _aCols, boolean [] _isLong, int _level, int _budget)
+    {
+        nKey   = _nKey;
+        kCols  = new int [nKey];
+        for (int j = 0; j < nKey; j++) kCols [j] = j;
+        fns    = _fns;
+        aCols  = _aCols;
+        isLong = _isLong;
+        level  = _level;
+        budget = (level >= MAX_LEVEL) ? Integer.MAX_VALUE : Math.max (1, _budget);
+
+        int cap = 16;
+        slots  = new int [2 * cap];
+        keys   = new Comparable [cap][];
+        hashes = new int [cap];
+        cnt    = new long [fns.length][];
+        lsum   = new long [fns.length][];
+        dsum   = new double [fns.length][];
+        ext    = new Comparable [fns.length][];
+        for (int a = 0; a < fns.length; a++) {
+            if (fns [a] == COUNT || fns [a] == AVG) cnt [a] = new long [cap];
+            if (fns [a] == SUM || fns [a] == AVG) {
+                if (isLong [a]) lsum [a] = new long [cap]; else dsum [a] = new double [cap];
+            } // if
+            if (fns [a] == MIN || fns [a] == MAX) ext [a] = new Comparable [cap];
+        } // for
+    } // constructor
+
+    /************************************************************************************
+     * Aggregate the tuples by the values in the group columns, returning for each group
+     * its values of the group columns followed by the value of each aggregate.
+     *
+     * @param rows    the tuples to aggregate
+     * @param gCols   the positions of the group columns
+     * @param fns     the aggregate functions (COUNT, SUM, MIN, MAX, AVG)
+     * @param aCols   the column each aggregate applies to (-1 for COUNT (*))
+     * @param isLong  whether each sum is of integers (kept exactly in a long)
+     * @param memory  the number of groups that may be held in memory
+     * @return  one tuple per group
+     */
+    static List <Comparable []> aggregate (List <Comparable []> rows, int [] gCols, int [] fns, int [] aCols,
+                                           boolean [] isLong, int memory)
+    {
+        int tasks = (rows instanceof FileList) ? 1
+                  : Math.max (1, Math.min (ForkJoinPool.getCommonPoolParallelism (), rows.size () / CHUNK));
+        HashAggregate fin = new HashAggregate (gCols.length, fns, aCols, isLong, 0, memory);
+
+        if (tasks == 1) {
+            for (Comparable [] tup : rows) fin.add (tup, gCols, false);
+        } else {
+            List <ForkJoinTask <HashAggregate>> parts = new ArrayList <> ();
+            for (int k = 0; k < tasks; k++) {
+                List <Comparable []> chunk = rows.subList (k * rows.size () / tasks, (k + 1) * rows.size () / tasks);
+                parts.add (ForkJoinPool.commonPool ().submit (() -> {
+                    HashAggregate h = new HashAggregate (gCols.length, fns, aCols, isLong, 0, memory / tasks);
+                    for (Comparable [] tup : chunk) h.add (tup, gCols, false);
+                    return h;
+                }));
+            } // for
+            for (ForkJoinTask <HashAggregate> part : parts) {
+                HashAggregate h = part.join ();
+                if (h.runs == null) {                           // combine the partial aggregates
+                    for (int g = 0; g < h.n; g++) fin.add (h.state (g), fin.kCols, true);
+                } else {                                        // or take over its spilled ones
+                    h.spill ();
+                    if (fin.runs == null) fin.startRuns ();
+                    for (int i = 0; i < FANOUT; i++) fin.runs.get (i).addAll (h.runs.get (i));
+                } // if
+            } // for
+        } // if
+
+        List <Comparable []> out = new ArrayList <> ();
+        fin.finish (out);
+        return out;
+    } // aggregate
+
+    /************************************************************************************
+     * Add tuple t (a source tuple, or the state of a group) to its group, spilling all
+     * groups once there are more than the budget.
+     *
+     * @param t        the tuple to add
+     * @param cols     the positions of the group columns in t
+     * @param isState  whether t is a state (partial aggregate) rather than a source tuple
+     */
+    @SuppressWarnings("unchecked")
+    private void add (Comparable [] t, int [] cols, boolean isState)
+    {
+        int g = group (t, cols);
+        int p = nKey;                                           // position of the next state field
+        for (int a = 0; a < fns.length; a++) {
+            switch (fns [a]) {
+            case COUNT:
+                cnt [a][g] += isState ? (Long) t [p++] : 1;
+                break;
+            case SUM:
+            case AVG:
+                Number v = (Number) (isState ? t [p++] : t [aCols [a]]);
+                if (isLong [a]) lsum [a][g] += v.longValue (); else dsum [a][g] += v.doubleValue ();
+                if (fns [a] == AVG) cnt [a][g] += isState ? (Long) t [p++] : 1;
+                break;
+            default:
+                Comparable x = isState ? t [p++] : t [aCols [a]];
+                Comparable e = ext [a][g];
+                int        c = (e == null) ? 0 : x.compareTo (e);
+                if (e == null || (fns [a] == MIN ? c < 0 : c > 0)) ext [a][g] = x;
+            } // switch
+        } // for
+        if (n > budget) spill ();
+    } // add
+
+    /************************************************************************************
+     * Return the number of the group of tuple t, adding a new group if it has none.
+     */
+    private int group (Comparable [] t, int [] cols)
+    {
+        int h    = hash (t, cols);
+        int mask = slots.length - 1;
+        int i    = h & mask;
+        for ( ; slots [i] != 0; i = (i + 1) & mask) {
+            int g = slots [i] - 1;
+            if (hashes [g] == h && equal (keys [g], t, cols)) return g;
+        } // for
+
+        if (n == keys.length) grow ();
+        Comparable [] k = new Comparable [nKey];
+        for (int j = 0; j < nKey; j++) k [j] = t [cols [j]];
+        keys [n]   = k;
+        hashes [n] = h;
+        for (int a = 0; a < fns.length; a++) {                  // reset the accumulators
+            if (cnt [a] != null)  cnt [a][n]  = 0;
+            if (lsum [a] != null) lsum [a][n] = 0;
+            if (dsum [a] != null) dsum [a][n] = 0.0;
+            if (ext [a] != null)  ext [a][n]  = null;
+        } // for
+        slots [i] = ++n;
+        if (2 * n > slots.length) rehash ();
+        return n - 1;
+    } // group
+
+    /************************************************************************************
+     * Return the state of group g: its group values followed by the partial aggregate
+     * of each aggregate (an AVG contributes its sum and count).
+     */
+    private Comparable [] state (int g)
+    {
+        int fields = nKey;
+        for (int f : fns) fields += (f == AVG) ? 2 : 1;
+        Comparable [] s = Arrays.copyOf (keys [g], fields);
+        int p = nKey;
+        for (int a = 0; a < fns.length; a++) {
+            if (fns [a] == SUM || fns [a] == AVG) s [p++] = isLong [a] ? (Comparable) lsum [a][g] : (Comparable) dsum [a][g];
+            if (fns [a] == COUNT || fns [a] == AVG) s [p++] = cnt [a][g];
+            if (fns [a] == MIN || fns [a] == MAX) s [p++] = ext [a][g];
+        } // for
+        return s;
+    } // state
+
+    /************************************************************************************
+     * Return the result of group g: its group values followed by the value of each
+     * aggregate.
+     */
+    private Comparable [] result (int g)
+    {
+        Comparable [] r = Arrays.copyOf (keys [g], nKey + fns.length);
+        for (int a = 0; a < fns.length; a++) {
+            switch (fns [a]) {
+            case COUNT: r [nKey + a] = cnt [a][g];                                                     break;
+            case SUM:   r [nKey + a] = isLong [a] ? (Comparable) lsum [a][g] : (Comparable) dsum [a][g]; break;
+            case AVG:   r [nKey + a] = (isLong [a] ? (double) lsum [a][g] : dsum [a][g]) / cnt [a][g];  break;
+            default:    r [nKey + a] = ext [a][g];
+            } // switch
+        } // for
+        return r;
+    } // result
+
+    /************************************************************************************
+     * Write the states of all groups to the run files of their partitions and empty
+     * the hash table.
+     */
+    private void spill ()
+    {
+        if (runs == null) startRuns ();
+        for (int g = 0; g < n; g++) {
+            int i = part (hashes [g], level);
+            if (own [i] == null) runs.get (i).add (own [i] = new RunFile ());
+            own [i].add (state (g));
+        } // for
+        n = 0;
+        Arrays.fill (slots, 0);
+    } // spill
+
+    /************************************************************************************
+     * Create the (empty) lists of run files of the partitions.
+     */
+    private void startRuns ()
+    {
+        runs = new ArrayList <> ();
+        for (int i = 0; i < FANOUT; i++) runs.add (new ArrayList <> ());
+        own = new RunFile [FANOUT];
+    } // startRuns
+
+    /************************************************************************************
+     * Add the result of every group to out: directly if nothing was spilled, and
+     * otherwise by combining the states of each partition in an aggregator of its own.
+     */
+    private void finish (List <Comparable []> out)
+    {
+        if (runs == null) {
+            for (int g = 0; g < n; g++) out.add (result (g));
+            return;
+        } // if
+
+        spill ();
+        try {
+            for (int i = 0; i < FANOUT; i++) {
+                HashAggregate sub = new HashAggregate (nKey, fns, aCols, isLong, level + 1, budget);
+                for (RunFile run : runs.get (i)) {
+                    for (Comparable [] s : run) sub.add (s, kCols, true);
+                    run.close ();
+                } // for
+                sub.finish (out);
+            } // for
+        } finally {
+            for (List <RunFile> part : runs) for (RunFile run : part) run.close ();
+        } // try
+    } // finish
+
+    /************************************************************************************
+     * Double the capacity of the group arrays.
+     */
+    private void grow ()
+    {
+        int cap = 2 * keys.length;
+        keys   = Arrays.copyOf (keys, cap);
+        hashes = Arrays.copyOf (hashes, cap);
+        for (int a = 0; a < fns.length; a++) {
+            if (cnt [a] != null)  cnt [a]  = Arrays.copyOf (cnt [a], cap);
+            if (lsum [a] != null) lsum [a] = Arrays.copyOf (lsum [a], cap);
+            if (dsum [a] != null) dsum [a] = Arrays.copyOf (dsum [a], cap);
+            if (ext [a] != null)  ext [a]  = Arrays.copyOf (ext [a], cap);
+        } // for
+    } // grow
+
+    /************************************************************************************
+     * Double the number of slots of the hash table, reinserting the groups.
+     */
+    private void rehash ()
+    {
+        slots = new int [2 * slots.length];
+        int mask = slots.length - 1;
+        for (int g = 0; g < n; g++) {
+            int i = hashes [g] & mask;
+            while (slots [i] != 0) i = (i + 1) & mask;
+            slots [i] = g + 1;
+        } // for
+    } // rehash
+
+    /************************************************************************************
+     * Return the hash code of the values of tuple t in the given columns.
+     */
+    private static int hash (Comparable [] t, int [] cols)
+    {
+        int h = 1;
+        for (int c : cols) h = 31 * h + t [c].hashCode ();
+        return h ^ (h >>> 16);
+    } // hash
+
+    /************************************************************************************
+     * Determine whether group values k equal the values of tuple t in the given columns.
+     */
+    private static boolean equal (Comparable [] k, Comparable [] t, int [] cols)
+    {
+        for (int j = 0; j < cols.length; j++) if (! k [j].equals (t [cols [j]])) return false;
+        return true;
+    } // equal
+
+    /************************************************************************************
+     * Return the partition of a group with hash code h, using a different hash function
+     * at each level.
+     */
+    private static int part (int h, int level)
+    {
+        h = (h ^ (0x9E3779B9 * (level + 1))) * 0x85EBCA6B;
+        return Math.floorMod (h ^ (h >>> 15), FANOUT);
+    } // part
+
+} // HashAggregate class
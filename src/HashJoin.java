@@ -0,0 +1,205 @@
+
+/****************************************************************************************
+ * @file  HashJoin.java
+ */
+
+import java.util.*;
+
+/****************************************************************************************
+ * This class performs hash joins (equi-joins) of two lists of tuples within a memory
+ * budget given as a number of tuples.  The smaller input is the build side.  If it fits
+ * in memory, it is loaded into a hash table from join key to its tuples, and the larger
+ * (probe) input streams past it once.
+ *
+ * Otherwise the join is a hybrid Grace hash join.  Both inputs are split by a hash of
+ * the join key into partitions, so that matching tuples fall into partitions with the
+ * same number, and each pair of partitions is joined on its own.  The first build
+ * partition stays in memory and is probed while the probe input is being partitioned;
+ * the others are spilled to run files.  A build partition that is still too large is
+ * partitioned again with a different hash function, up to MAX_LEVEL times; one that
+ * does not shrink (a single very frequent key) is joined in memory.
+ */
+class HashJoin
+{
+    /** The maximum depth of repartitioning.
+     */
+    private static final int MAX_LEVEL = 4;
+
+    /** The maximum number of partitions per pass.
+     */
+    private static final int MAX_FANOUT = 64;
+
+    /** The positions of the join columns in the build and probe tuples.
+     */
+    private final int [] bCols, pCols;
+
+    /** Whether the build side is the left input.
+     */
+    private final boolean buildLeft;
+
+    /** The positions of the right columns to output (null for all).
+     */
+    private final int [] rOut;
+
+    /** The number of build tuples that may be held in memory.
+     */
+    private final int memory;
+
+    /** The joined tuples.
+     */
+    private final List <Comparable []> rows = new ArrayList <> ();
+
+    /************************************************************************************
+     * Construct a hash join of build tuples (joined on bCols) with probe tuples (joined
+     * on pCols).
+     */
+    private HashJoin (int [] _bCols, int [] _pCols, boolean _buildLeft, int [] _rOut, int _memory)
+    {
+        bCols     = _bCols;
+        pCols     = _pCols;
+        buildLeft = _buildLeft;
+        rOut      = _rOut;
+        memory    = _memory;
+    } // constructor
+
+    /************************************************************************************
+     * Hash join the tuples of left and right on the values in columns lCols (of left)
+     * and rCols (of right), returning each matching pair as the left tuple followed by
+     * the columns rOut of the right tuple.
+     *
+     * @param left    the tuples of the left input
+     * @param lCols   the positions of the join columns in left
+     * @param right   the tuples of the right input
+     * @param rCols   the positions of the join columns in right
+     * @param rOut    the positions of the right columns to output (null for all)
+     * @param memory  the number of build tuples that may be held in memory
+     * @return  the joined tuples
+     */
+    static List <Comparable []> join (List <Comparable []> left, int [] lCols, List <Comparable []> right,
+                                      int [] rCols, int [] rOut, int memory)
+    {
+        boolean  buildLeft = left.size () <= right.size ();
+        HashJoin hj        = new HashJoin (buildLeft ? lCols : rCols, buildLeft ? rCols : lCols,
+                                           buildLeft, rOut, Math.max (1, memory));
+        hj.join (buildLeft ? left : right, Math.min (left.size (), right.size ()), buildLeft ? right : left, 0);
+        return hj.rows;
+    } // join
+
+    /************************************************************************************
+     * Join the build tuples with the probe tuples, in memory if the build side fits and
+     * by partitioning both sides otherwise.
+     *
+     * @param build   the build tuples
+     * @param nBuild  the number of build tuples
+     * @param probe   the probe tuples
+     * @param level   the partitioning depth (selecting the hash function)
+     */
+    private void join (Iterable <Comparable []> build, int nBuild, Iterable <Comparable []> probe, int level)
+    {
+        if (nBuild <= memory || level >= MAX_LEVEL) {
+            List <Comparable []> all = new ArrayList <> (nBuild);
+            for (Comparable [] b : build) all.add (b);
+            Comparable [][]            arr   = all.toArray (new Comparable [0][]);
+            Map <KeyType, PostingList> table = load (arr);
+            for (Comparable [] p : probe) probe (table, arr, key (p, pCols), p);
+            return;
+        } // if
+
+        int                  parts = Math.min (MAX_FANOUT, nBuild / memory + 2);
+        List <Comparable []> mem   = new ArrayList <> ();      // partition 0 stays in memory
+        RunFile []           bRun  = new RunFile [parts];
+        RunFile []           pRun  = new RunFile [parts];
+        try {
+            for (int i = 1; i < parts; i++) {
+                bRun [i] = new RunFile ();
+                pRun [i] = new RunFile ();
+            } // for
+            for (Comparable [] b : build) {
+                int i = part (key (b, bCols), level, parts);
+                if (i == 0) mem.add (b); else bRun [i].add (b);
+            } // for
+
+            Comparable [][]            arr   = mem.toArray (new Comparable [0][]);
+            Map <KeyType, PostingList> table = load (arr);
+            mem = null;
+            for (Comparable [] p : probe) {
+                KeyType k = key (p, pCols);
+                int     i = part (k, level, parts);
+                if (i == 0) probe (table, arr, k, p); else pRun [i].add (p);
+            } // for
+            table = null;
+            arr   = null;
+
+            for (int i = 1; i < parts; i++) {
+                int n = bRun [i].size ();
+                if (n > 0 && pRun [i].size () > 0) {
+                    join (bRun [i], n, pRun [i], (n < nBuild) ? level + 1 : MAX_LEVEL);
+                } // if
+                bRun [i].close ();
+                pRun [i].close ();
+            } // for
+        } finally {
+            for (int i = 1; i < parts; i++) {
+                if (bRun [i] != null) bRun [i].close ();
+                if (pRun [i] != null) pRun [i].close ();
+            } // for
+        } // try
+    } // join
+
+    /************************************************************************************
+     * Load the build tuples into a hash table from join key to their positions in arr.
+     */
+    private Map <KeyType, PostingList> load (Comparable [][] arr)
+    {
+        Map <KeyType, PostingList> table = new HashMap <> (2 * arr.length);
+        for (int i = 0; i < arr.length; i++) {
+            table.computeIfAbsent (key (arr [i], bCols), k -> new PostingList ()).add (i);
+        } // for
+        return table;
+    } // load
+
+    /************************************************************************************
+     * Join probe tuple p, whose join key is k, with its matches in the hash table.
+     */
+    private void probe (Map <KeyType, PostingList> table, Comparable [][] arr, KeyType k, Comparable [] p)
+    {
+        PostingList matches = table.get (k);
+        if (matches == null) return;
+        for (int i = 0; i < matches.size (); i++) {
+            Comparable [] b = arr [matches.get (i)];
+            rows.add (buildLeft ? joined (b, p, rOut) : joined (p, b, rOut));
+        } // for
+    } // probe
+
+    /************************************************************************************
+     * Return the join key of tuple t (single and pair keys use KeyType's compact forms).
+     */
+    private static KeyType key (Comparable [] t, int [] cols)
+    {
+        Comparable [] vals = new Comparable [cols.length];
+        for (int j = 0; j < cols.length; j++) vals [j] = t [cols [j]];
+        return KeyType.of (vals);
+    } // key
+
+    /************************************************************************************
+     * Return the partition of join key k among the given number of partitions, using a
+     * different hash function at each level.
+     */
+    private static int part (KeyType k, int level, int parts)
+    {
+        int h = (k.hashCode () ^ (0x9E3779B9 * (level + 1))) * 0x85EBCA6B;
+        return Math.floorMod (h ^ (h >>> 15), parts);
+    } // part
+
+    /************************************************************************************
+     * Concatenate left tuple l with the columns rOut (all if null) of right tuple r.
+     */
+    static Comparable [] joined (Comparable [] l, Comparable [] r, int [] rOut)
+    {
+        if (rOut == null) return ArrayUtil.concat (l, r);
+        Comparable [] t = Arrays.copyOf (l, l.length + rOut.length);
+        for (int j = 0; j < rOut.length; j++) t [l.length + j] = r [rOut [j]];
+        return t;
+    } // joined
+
+} // HashJoin class
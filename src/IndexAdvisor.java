@@ -0,0 +1,125 @@
+
+/****************************************************************************************
+ * @file  IndexAdvisor.java
+ */
+
+import java.io.Serializable;
+
+/****************************************************************************************
+ * This class drives the "Adaptive" index mode of a table.  It records the mix of
+ * operations applied to the primary index (inserts, point lookups, join probes and
+ * range selections) together with the order in which keys arrive, and recommends the
+ * map type best suited to the recent workload:
+ *
+ *   - BpTreeMap  once range selections make up a noticeable share of the reads (or the
+ *                keys arrive in ascending order, which a B+tree appends cheaply),
+ *   - LinHashMap for point lookups, join probes and inserts of randomly ordered keys.
+ *
+ * Counts decay at every decision so that the advice follows shifts in the workload, and
+ * a decision is only taken after WINDOW operations so the index does not thrash.
+ */
+public class IndexAdvisor
+       implements Serializable
+{
+    /** The kinds of operations on the primary index.
+     */
+    static final int INSERT = 0, POINT = 1, JOIN = 2, RANGE = 3;
+
+    /** The number of operations between decisions.
+     */
+    private static final int WINDOW = 256;
+
+    /** The minimum share of range selections among the reads that calls for a B+tree.
+     */
+    private static final double RANGE_SHARE = 0.05;
+
+    /** The map type chosen before any operations are seen.
+     */
+    static final String INITIAL = "LinHashMap";
+
+    /** The (decayed) number of operations of each kind.
+     */
+    private final double [] ops = new double [4];
+
+    /** The (decayed) number of inserts whose key was not smaller than the previous key.
+     */
+    private double ascending = 0.0;
+
+    /** The key of the last insert.
+     */
+    private KeyType lastKey;
+
+    /** The number of operations since the last decision.
+     */
+    private int sinceDecision = 0;
+
+    /************************************************************************************
+     * Record n operations of the given kind.
+     *
+     * @param kind  the kind of operation (INSERT, POINT, JOIN or RANGE)
+     * @param n     the number of operations
+     */
+    void record (int kind, int n)
+    {
+        ops [kind]    += n;
+        sinceDecision += n;
+    } // record
+
+    /************************************************************************************
+     * Record the key of an inserted tuple to track the order in which keys arrive.
+     *
+     * @param keyVal  the key of the inserted tuple
+     */
+    void recordKey (KeyType keyVal)
+    {
+        if (lastKey == null || keyVal.compareTo (lastKey) >= 0) ascending++;
+        lastKey = keyVal;
+    } // recordKey
+
+    /************************************************************************************
+     * Determine whether enough operations have been seen to reconsider the index.
+     *
+     * @return  whether a decision is due
+     */
+    boolean isDue ()
+    {
+        return sinceDecision >= WINDOW;
+    } // isDue
+
+    /************************************************************************************
+     * Recommend the map type for the recent workload and start a new window.
+     *
+     * @param current  the map type currently in use
+     * @return  the recommended map type
+     */
+    String recommend (String current)
+    {
+        double reads  = ops [POINT] + ops [JOIN] + ops [RANGE];
+        String choice = current;
+        if (ops [RANGE] > 0 && ops [RANGE] >= RANGE_SHARE * reads) {
+            choice = "BpTreeMap";
+        } else if (reads > 0) {
+            choice = "LinHashMap";
+        } else if (ops [INSERT] > 0) {                         // load only: follow key order
+            choice = (ascending >= 0.9 * ops [INSERT]) ? "BpTreeMap" : "LinHashMap";
+        } // if
+
+        for (int k = 0; k < ops.length; k++) ops [k] /= 2;     // decay towards recent history
+        ascending    /= 2;
+        sinceDecision = 0;
+        return choice;
+    } // recommend
+
+    /************************************************************************************
+     * Convert the recorded operation mix to a string.
+     *
+     * @return  the string representation of the advisor's statistics
+     */
+    public String toString ()
+    {
+        return "IndexAdvisor (insert = " + (int) ops [INSERT] + ", point = " + (int) ops [POINT]
+               + ", join = " + (int) ops [JOIN] + ", range = " + (int) ops [RANGE]
+               + ", ascending = " + (int) ascending + ")";
+    } // toString
+
+} // IndexAdvisor class
@@ -0,0 +1,149 @@
+
+/****************************************************************************************
+ * @file  IndexFile.java
+ */
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/****************************************************************************************
+ * This class reads and writes the binary files in which a table persists its indexes,
+ * one file per index, so that a restart does not have to rebuild them.  An index is
+ * stored as its entries in ascending key order, each a normalized key (see KeyEncoder)
+ * with the row ids it maps to:
+ *
+ *   int    MAGIC
+ *   int    FORMAT
+ *   long   version of the table data the index was built over
+ *   UTF    map type of the index
+ *   int    number of entries
+ *   entry  int key length, key bytes, int number of row ids, row ids
+ *   long   CRC32 checksum of all preceding bytes
+ *
+ * A file is read through a memory mapping and only accepted if its checksum, format
+ * and data version match; otherwise the caller rebuilds the index.
+ */
+public class IndexFile
+{
+    /** The magic number starting every index file ("IDX1").
+     */
+    private static final int MAGIC = 0x49445831;
+
+    /** The version of the file format.
+     */
+    private static final int FORMAT = 1;
+
+    /** The map type recorded in the file.
+     */
+    final String mapType;
+
+    /** The normalized keys, in ascending order.
+     */
+    final byte [][] keys;
+
+    /** The row ids of each key.
+     */
+    final int [][] rids;
+
+    /************************************************************************************
+     * Construct the contents of an index file.
+     *
+     * @param _mapType  the map type of the index
+     * @param _keys     the normalized keys
+     * @param _rids     the row ids of each key
+     */
+    private IndexFile (String _mapType, byte [][] _keys, int [][] _rids)
+    {
+        mapType = _mapType;
+        keys    = _keys;
+        rids    = _rids;
+    } // constructor
+
+    /************************************************************************************
+     * Write an index file with the given entries, sorting them by key.
+     *
+     * @param path     the path of the file
+     * @param mapType  the map type of the index
+     * @param version  the version of the table data the index was built over
+     * @param keys     the normalized keys
+     * @param rids     the row ids of each key (parallel to keys)
+     * @throws IOException  if the file cannot be written
+     */
+    static void write (String path, String mapType, long version, List <byte []> keys, List <int []> rids)
+           throws IOException
+    {
+        Integer [] order = new Integer [keys.size ()];
+        for (int i = 0; i < order.length; i++) order [i] = i;
+        Arrays.sort (order, (i, j) -> KeyEncoder.compare (keys.get (i), keys.get (j), 0));
+
+        ByteArrayOutputStream bs  = new ByteArrayOutputStream ();
+        DataOutputStream      dos = new DataOutputStream (bs);
+        dos.writeInt (MAGIC);
+        dos.writeInt (FORMAT);
+        dos.writeLong (version);
+        dos.writeUTF (mapType);
+        dos.writeInt (order.length);
+        for (int i : order) {
+            byte [] k = keys.get (i);
+            int []  r = rids.get (i);
+            dos.writeInt (k.length);
+            dos.write (k);
+            dos.writeInt (r.length);
+            for (int rid : r) dos.writeInt (rid);
+        } // for
+        dos.flush ();
+
+        CRC32 crc = new CRC32 ();
+        crc.update (bs.toByteArray ());
+        dos.writeLong (crc.getValue ());
+        Files.write (Paths.get (path), bs.toByteArray ());
+    } // write
+
+    /************************************************************************************
+     * Read the index file at the given path, returning null if it is missing, corrupt
+     * (bad checksum or format) or was built over a different version of the table data.
+     *
+     * @param path     the path of the file
+     * @param version  the version of the table data
+     * @return  the contents of the file, or null if it cannot be used
+     */
+    static IndexFile read (String path, long version)
+    {
+        Path p = Paths.get (path);
+        if (! Files.exists (p)) return null;
+        try (FileChannel ch = FileChannel.open (p, StandardOpenOption.READ)) {
+            long size = ch.size ();
+            if (size < 32 || size > Integer.MAX_VALUE) return null;
+            MappedByteBuffer buf = ch.map (FileChannel.MapMode.READ_ONLY, 0, size);
+
+            CRC32 crc = new CRC32 ();
+            buf.limit ((int) size - 8);
+            crc.update (buf);                                   // checksum all but the trailer
+            buf.limit ((int) size);
+            if (crc.getValue () != buf.getLong ((int) size - 8)) return null;
+
+            buf.position (0);
+            if (buf.getInt () != MAGIC || buf.getInt () != FORMAT || buf.getLong () != version) return null;
+            byte [] type = new byte [buf.getShort () & 0xffff];
+            buf.get (type);
+            int        n    = buf.getInt ();
+            byte [][]  keys = new byte [n][];
+            int [][]   rids = new int [n][];
+            for (int i = 0; i < n; i++) {
+                keys [i] = new byte [buf.getInt ()];
+                buf.get (keys [i]);
+                rids [i] = new int [buf.getInt ()];
+                for (int j = 0; j < rids [i].length; j++) rids [i][j] = buf.getInt ();
+            } // for
+            return new IndexFile (new String (type, StandardCharsets.UTF_8), keys, rids);   // map types are ASCII
+        } catch (IOException | RuntimeException ex) {
+            return null;                                        // unreadable: rebuild instead
+        } // try
+    } // read
+
+} // IndexFile class
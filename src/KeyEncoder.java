@@ -0,0 +1,217 @@
+
+/*****************************************************************************************
+ * @file  KeyEncoder.java
+ */
+
+import java.io.ByteArrayOutputStream;
+
+/*****************************************************************************************
+ * The KeyEncoder class encodes keys into normalized (order-preserving) byte strings:
+ * comparing two encoded keys as unsigned bytes gives the same result as comparing the
+ * keys with KeyType.compareTo.  The first eight bytes of an encoding, read as an unsigned
+ * long, form a prefix that decides most comparisons with a single long comparison.  The
+ * encoding is also the format for storing keys on disk.
+ *
+ * Numbers are written big-endian with the sign bit flipped (all bits for negative reals),
+ * characters as two bytes, and strings as their UTF-16 code units in (modified) UTF-8,
+ * with 0x00 escaped as 0x00 0xFF and terminated by 0x00 0x00.
+ */
+public class KeyEncoder
+{
+    /************************************************************************************
+     * Determine whether values of the given domain can be encoded.
+     *
+     * @param dom  the domain (data type) of an attribute
+     * @return  whether the domain is supported
+     */
+    public static boolean supports (Class dom)
+    {
+        return dom == Integer.class || dom == Long.class || dom == Short.class || dom == Byte.class
+            || dom == Double.class  || dom == Float.class || dom == Character.class
+            || dom == String.class;
+    } // supports
+
+    /************************************************************************************
+     * Encode the given key into a normalized byte string.
+     *
+     * @param k  the key to encode
+     * @return  the normalized encoding of the key
+     */
+    public static byte [] encode (KeyType k)
+    {
+        return encode (k.values ());
+    } // encode
+
+    /************************************************************************************
+     * Encode the given attribute values into a normalized byte string.
+     *
+     * @param vals  the attribute values making up the key
+     * @return  the normalized encoding of the values
+     */
+    public static byte [] encode (Comparable [] vals)
+    {
+        ByteArrayOutputStream bs = new ByteArrayOutputStream (8 * vals.length);
+        for (Comparable v : vals) {
+            if (v instanceof Integer) {
+                putBits (bs, ((Integer) v) ^ Integer.MIN_VALUE, 4);
+            } else if (v instanceof String) {
+                putString (bs, (String) v);
+            } else if (v instanceof Long) {
+                putBits (bs, ((Long) v) ^ Long.MIN_VALUE, 8);
+            } else if (v instanceof Double) {
+                long b = Double.doubleToLongBits ((Double) v);
+                putBits (bs, (b < 0) ? ~ b : b ^ Long.MIN_VALUE, 8);
+            } else if (v instanceof Float) {
+                int b = Float.floatToIntBits ((Float) v);
+                putBits (bs, (b < 0) ? ~ b : b ^ Integer.MIN_VALUE, 4);
+            } else if (v instanceof Short) {
+                putBits (bs, ((Short) v) ^ Short.MIN_VALUE, 2);
+            } else if (v instanceof Byte) {
+                putBits (bs, ((Byte) v) ^ Byte.MIN_VALUE, 1);
+            } else if (v instanceof Character) {
+                putBits (bs, (Character) v, 2);
+            } else {
+                throw new IllegalArgumentException ("KeyEncoder.encode: unsupported domain "
+                                                    + v.getClass ().getName ());
+            } // if
+        } // for
+        return bs.toByteArray ();
+    } // encode
+
+    /************************************************************************************
+     * Decode the given normalized byte string back into a key.
+     *
+     * @param b       the normalized encoding of a key
+     * @param domain  the domains of the key attributes
+     * @return  the decoded key
+     */
+    public static KeyType decode (byte [] b, Class [] domain)
+    {
+        Comparable [] vals = new Comparable [domain.length];
+        int [] pos = { 0 };
+        for (int i = 0; i < domain.length; i++) {
+            Class dom = domain [i];
+            if (dom == Integer.class) {
+                vals [i] = (int) getBits (b, pos, 4) ^ Integer.MIN_VALUE;
+            } else if (dom == String.class) {
+                vals [i] = getString (b, pos);
+            } else if (dom == Long.class) {
+                vals [i] = getBits (b, pos, 8) ^ Long.MIN_VALUE;
+            } else if (dom == Double.class) {
+                long x = getBits (b, pos, 8);
+                vals [i] = Double.longBitsToDouble ((x < 0) ? x ^ Long.MIN_VALUE : ~ x);
+            } else if (dom == Float.class) {
+                int x = (int) getBits (b, pos, 4);
+                vals [i] = Float.intBitsToFloat ((x < 0) ? x ^ Integer.MIN_VALUE : ~ x);
+            } else if (dom == Short.class) {
+                vals [i] = (short) (getBits (b, pos, 2) ^ Short.MIN_VALUE);
+            } else if (dom == Byte.class) {
+                vals [i] = (byte) (getBits (b, pos, 1) ^ Byte.MIN_VALUE);
+            } else if (dom == Character.class) {
+                vals [i] = (char) getBits (b, pos, 2);
+            } else {
+                throw new IllegalArgumentException ("KeyEncoder.decode: unsupported domain "
+                                                    + dom.getName ());
+            } // if
+        } // for
+        return KeyType.of (vals);
+    } // decode
+
+    /************************************************************************************
+     * Return the first eight bytes of the given encoding as a long (zero padded), so
+     * that unsigned comparison of prefixes agrees with comparison of the encodings.
+     *
+     * @param b  the normalized encoding of a key
+     * @return  the long prefix
+     */
+    public static long prefix (byte [] b)
+    {
+        long p = 0;
+        for (int i = 0; i < 8; i++) p = (p << 8) | ((i < b.length) ? (b [i] & 0xff) : 0);
+        return p;
+    } // prefix
+
+    /************************************************************************************
+     * Compare two normalized encodings as unsigned byte strings, starting at the given
+     * offset (bytes before the offset are known to be equal).
+     *
+     * @param a     the first encoding
+     * @param b     the second encoding
+     * @param from  the offset to start comparing at
+     * @return  negative, zero or positive as a is less than, equal to or greater than b
+     */
+    public static int compare (byte [] a, byte [] b, int from)
+    {
+        int n = Math.min (a.length, b.length);
+        for (int i = from; i < n; i++) {
+            int c = (a [i] & 0xff) - (b [i] & 0xff);
+            if (c != 0) return c;
+        } // for
+        return a.length - b.length;
+    } // compare
+
+    /************************************************************************************
+     * Write the low n bytes of the given bits in big-endian order.
+     */
+    private static void putBits (ByteArrayOutputStream bs, long bits, int n)
+    {
+        for (int i = n - 1; i >= 0; i--) bs.write ((int) (bits >>> (8 * i)));
+    } // putBits
+
+    /************************************************************************************
+     * Read n bytes in big-endian order, advancing the position pos [0].
+     */
+    private static long getBits (byte [] b, int [] pos, int n)
+    {
+        long bits = 0;
+        for (int i = 0; i < n; i++) bits = (bits << 8) | (b [pos [0]++] & 0xff);
+        return (n < 8 && (bits & (1L << (8 * n - 1))) != 0) ? bits | (-1L << (8 * n)) : bits;
+    } // getBits
+
+    /************************************************************************************
+     * Write the string one UTF-16 code unit at a time (modified UTF-8 keeps the code
+     * unit order), escaping zero bytes and appending the terminator.
+     */
+    private static void putString (ByteArrayOutputStream bs, String s)
+    {
+        for (int i = 0; i < s.length (); i++) {
+            char c = s.charAt (i);
+            if (c == 0) {
+                bs.write (0x00); bs.write (0xff);
+            } else if (c < 0x80) {
+                bs.write (c);
+            } else if (c < 0x800) {
+                bs.write (0xc0 | (c >> 6));  bs.write (0x80 | (c & 0x3f));
+            } else {
+                bs.write (0xe0 | (c >> 12)); bs.write (0x80 | ((c >> 6) & 0x3f)); bs.write (0x80 | (c & 0x3f));
+            } // if
+        } // for
+        bs.write (0x00); bs.write (0x00);
+    } // putString
+
+    /************************************************************************************
+     * Read a string written by putString, advancing the position pos [0].
+     */
+    private static String getString (byte [] b, int [] pos)
+    {
+        StringBuilder sb = new StringBuilder ();
+        int i = pos [0];
+        while (true) {
+            int c = b [i++] & 0xff;
+            if (c == 0x00) {
+                if ((b [i++] & 0xff) == 0x00) break;               // terminator
+                sb.append ((char) 0);                               // escaped zero
+            } else if (c < 0x80) {
+                sb.append ((char) c);
+            } else if (c < 0xe0) {
+                sb.append ((char) (((c & 0x1f) << 6) | (b [i++] & 0x3f)));
+            } else {
+                int c2 = b [i++] & 0x3f, c3 = b [i++] & 0x3f;
+                sb.append ((char) (((c & 0x0f) << 12) | (c2 << 6) | c3));
+            } // if
+        } // while
+        pos [0] = i;
+        return sb.toString ();
+    } // getString
+
+} // KeyEncoder class
@@ -9,27 +9,36 @@
 
 import java.io.Serializable;
 
-import static java.lang.Math.abs;
 import static java.lang.System.out;
 
 /*****************************************************************************************
  * The KeyType class provides a key type for handling both non-composite and composite keys.
  * A key is a minimal set of attributes that can be used to uniquely identify a tuple.
+ * The (well-mixed) hash code is computed once and cached.  Use KeyType.of to obtain the
+ * specialized subclasses for single Integer, single String and pair keys, which avoid
+ * looping over the key array, or KeyType.encoded for keys that compare by their
+ * normalized byte encoding (see KeyEncoder).  All representations of the same key are
+ * equal, compare as equal and have the same hash code.
  */
 public class KeyType
        implements Comparable <KeyType>, Serializable
 {
-    /** Array holding the attribute values for a particular key
+    /** Array holding the attribute values for a particular key (null for the subclasses)
      */
     private final Comparable [] key;
 
+    /** The cached hash code for the key (non-negative, so it can be used with %)
+     */
+    private final int hash;
+
     /*************************************************************************************
      * Construct an instance of KeyType from a Comparable array.  
      * @param _key  the primary key
      */
     public KeyType (Comparable [] _key)
     {
-         key = _key;
+         key  = _key;
+         hash = hashOf (_key);
     } // constructor
 
     /*************************************************************************************
@@ -41,8 +50,78 @@ public class KeyType
          key = new Comparable [keys.length + 1];
          key [0] = key0;
          for (int i = 1; i < key.length; i++) key [i] = keys [i-1];
+         hash = hashOf (key);
     } // constructor
 
+    /*************************************************************************************
+     * Construct an instance of a KeyType subclass with the given precomputed hash code.
+     * @param _key   the primary key (null when the subclass holds the values itself)
+     * @param _hash  the hash code for the key
+     */
+    private KeyType (Comparable [] _key, int _hash)
+    {
+         key  = _key;
+         hash = _hash;
+    } // constructor
+
+    /*************************************************************************************
+     * Make a key from the given attribute values, using a specialized subclass for single
+     * Integer, single String and pair keys.
+     * @param vals  the attribute values making up the key
+     * @return  the key
+     */
+    public static KeyType of (Comparable ... vals)
+    {
+        if (vals.length == 1) {
+            if (vals [0] instanceof Integer) return new IntKey ((Integer) vals [0]);
+            if (vals [0] instanceof String)  return new StringKey ((String) vals [0]);
+        } else if (vals.length == 2) {
+            return new PairKey (vals [0], vals [1]);
+        } // if
+        return new KeyType (vals);
+    } // of
+
+    /*************************************************************************************
+     * Make a key from the given attribute values that carries its normalized encoding, so
+     * that two such keys compare with a single unsigned long comparison in most cases.
+     * @param vals  the attribute values making up the key
+     * @return  the encoded key
+     */
+    public static KeyType encoded (Comparable ... vals)
+    {
+        return new EncodedKey (vals);
+    } // encoded
+
+    /*************************************************************************************
+     * Return the number of attribute values in the key.
+     * @return  the arity of the key
+     */
+    public int size ()
+    {
+        return key.length;
+    } // size
+
+    /*************************************************************************************
+     * Return the i-th attribute value in the key.
+     * @param i  the position of the attribute value
+     * @return  the i-th attribute value
+     */
+    public Comparable get (int i)
+    {
+        return key [i];
+    } // get
+
+    /*************************************************************************************
+     * Return the attribute values in the key as a new array.
+     * @return  the attribute values
+     */
+    public Comparable [] values ()
+    {
+        Comparable [] vals = new Comparable [size ()];
+        for (int i = 0; i < vals.length; i++) vals [i] = get (i);
+        return vals;
+    } // values
+
     /*************************************************************************************
      * Compare two keys (negative => less than, zero => equals, positive => greater than).
      * @param k  the other key (to compare with this)
@@ -51,9 +130,9 @@ public class KeyType
     @SuppressWarnings("unchecked")
     public int compareTo (KeyType k)
     {
-        for (int i = 0; i < key.length; i++) {
-            if (key [i].compareTo (k.key [i]) < 0) return -1;
-            if (key [i].compareTo (k.key [i]) > 0) return 1;
+        for (int i = 0; i < size (); i++) {
+            int c = get (i).compareTo (k.get (i));
+            if (c != 0) return c;
         } // for
         return 0;
     } // compareTo
@@ -63,9 +142,9 @@ public class KeyType
      * @param k  the other key (to compare with this)
      * @return  true if equal, false otherwise
      */
-    public boolean equals (KeyType k)
+    public boolean equals (Object k)
     {
-        return compareTo (k) == 0;
+        return k instanceof KeyType && hash == ((KeyType) k).hash && compareTo ((KeyType) k) == 0;
     } // equals
 
     /**
@@ -73,19 +152,45 @@ public class KeyType
      * @param k key to find difference with
      * @return  an integer representing the difference between keys
      */
-    public int difference(KeyType k) { return (int) key[0] - (int) k.key[0]; }
+    public int difference(KeyType k) { return (int) get(0) - (int) k.get(0); }
 
     /*************************************************************************************
-     * Compute a hash code for this object (equal objects should produce the same hash code).
+     * Return the cached hash code for this object (equal objects produce the same hash code).
      * @return  an integer hash code value
      */
     public int hashCode ()
     {
-        int sum = 0;
-        for (int i = 0; i < key.length; i++) sum = 7 * sum + key [i].hashCode ();
-        return abs (sum);
+        return hash;
     } // hashCode
 
+    /*************************************************************************************
+     * Compute the hash code for the given attribute values by combining their hash codes
+     * and mixing the bits (so that buckets chosen by % are not clustered).
+     * @param vals  the attribute values
+     * @return  a non-negative hash code
+     */
+    private static int hashOf (Comparable [] vals)
+    {
+        int sum = 0;
+        for (int i = 0; i < vals.length; i++) sum = 31 * sum + vals [i].hashCode ();
+        return mix (sum);
+    } // hashOf
+
+    /*************************************************************************************
+     * Mix the bits of the given hash (the MurmurHash3 finalizer), clearing the sign bit.
+     * @param h  the hash to mix
+     * @return  a well-mixed non-negative hash
+     */
+    private static int mix (int h)
+    {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & 0x7fffffff;
+    } // mix
+
     /*************************************************************************************
      * Convert the key to a string.
      * @return  the string representation of the key
@@ -93,10 +198,116 @@ public class KeyType
     public String toString ()
     {
         String s = "Key (";
-        for (int i = 0; i < key.length; i++) s += " " + key [i];
+        for (int i = 0; i < size (); i++) s += " " + get (i);
         return s + (" )");
     } // toString
 
+    /*************************************************************************************
+     * The IntKey class is a key consisting of a single Integer.
+     */
+    static final class IntKey
+          extends KeyType
+    {
+        private final int val;
+
+        IntKey (int _val)
+        {
+            super (null, mix (_val));
+            val = _val;
+        } // constructor
+
+        public int size () { return 1; }
+
+        public Comparable get (int i) { return val; }
+
+        public int compareTo (KeyType k)
+        {
+            return (k instanceof IntKey) ? Integer.compare (val, ((IntKey) k).val) : super.compareTo (k);
+        } // compareTo
+    } // IntKey class
+
+    /*************************************************************************************
+     * The StringKey class is a key consisting of a single String.
+     */
+    static final class StringKey
+          extends KeyType
+    {
+        private final String val;
+
+        StringKey (String _val)
+        {
+            super (null, mix (_val.hashCode ()));
+            val = _val;
+        } // constructor
+
+        public int size () { return 1; }
+
+        public Comparable get (int i) { return val; }
+
+        public int compareTo (KeyType k)
+        {
+            return (k instanceof StringKey) ? val.compareTo (((StringKey) k).val) : super.compareTo (k);
+        } // compareTo
+    } // StringKey class
+
+    /*************************************************************************************
+     * The PairKey class is a composite key consisting of two attribute values.
+     */
+    static final class PairKey
+          extends KeyType
+    {
+        private final Comparable val0, val1;
+
+        PairKey (Comparable _val0, Comparable _val1)
+        {
+            super (null, mix (31 * _val0.hashCode () + _val1.hashCode ()));
+            val0 = _val0;
+            val1 = _val1;
+        } // constructor
+
+        public int size () { return 2; }
+
+        public Comparable get (int i) { return (i == 0) ? val0 : val1; }
+
+        @SuppressWarnings("unchecked")
+        public int compareTo (KeyType k)
+        {
+            if (! (k instanceof PairKey)) return super.compareTo (k);
+            PairKey p = (PairKey) k;
+            int c = val0.compareTo (p.val0);
+            return (c != 0) ? c : val1.compareTo (p.val1);
+        } // compareTo
+    } // PairKey class
+
+    /*************************************************************************************
+     * The EncodedKey class is a key that also holds its normalized byte encoding and the
+     * first eight bytes of it as a long prefix.  Two encoded keys are compared by prefix
+     * and, only on a tie, by the remaining bytes.
+     */
+    static final class EncodedKey
+          extends KeyType
+    {
+        private final byte [] bytes;
+        private final long    prefix;
+
+        EncodedKey (Comparable [] vals)
+        {
+            super (vals, hashOf (vals));
+            bytes  = KeyEncoder.encode (vals);
+            prefix = KeyEncoder.prefix (bytes);
+        } // constructor
+
+        byte [] bytes () { return bytes; }
+
+        public int compareTo (KeyType k)
+        {
+            if (! (k instanceof EncodedKey)) return super.compareTo (k);
+            EncodedKey e = (EncodedKey) k;
+            int c = Long.compareUnsigned (prefix, e.prefix);
+            return (c != 0) ? c : KeyEncoder.compare (bytes, e.bytes, 8);
+        } // compareTo
+    } // EncodedKey class
+
     /*************************************************************************************
      * The main method is used for testing purposes only.
      * @param args  the command-line arguments
@@ -114,20 +325,25 @@ public class KeyType
         out.println ("key2 = " + key2);
         out.println ("key3 = " + key3);
         out.println ();
-        out.println ("key1 <  key2: " + (key1 <  key2));
+        out.println ("key1 <  key2: " + (key1.compareTo (key2) < 0));
         out.println ("key1 == key2: " + (key1.equals(key2)));
-        out.println ("key1 >  key2: " + (key1 >  key2));
+        out.println ("key1 >  key2: " + (key1.compareTo (key2) > 0));
         out.println ();
-        out.println ("key2 <  key1: " + (key2 < key1));
+        out.println ("key2 <  key1: " + (key2.compareTo (key1) < 0));
         out.println ("key2 == key1: " + (key2.equals (key1)));
-        out.println ("key2 >  key1: " + (key2 > key1));
+        out.println ("key2 >  key1: " + (key2.compareTo (key1) > 0));
         out.println ();
-        out.println ("key1 < key3: "  + (key1 < key3));
+        out.println ("key1 < key3: "  + (key1.compareTo (key3) < 0));
         out.println ("key1 == key3: " + (key1.equals (key3)));
-        out.println ("key1 > key3: "  + (key1 > key3));
+        out.println ("key1 > key3: "  + (key1.compareTo (key3) > 0));
         out.println ();
         out.println ("key1.hashCode () == key2.hashCode (): " + (key1.hashCode () == key2.hashCode ()));
         out.println ("key1.hashCode () == key3.hashCode (): " + (key1.hashCode () == key3.hashCode ()));
+        out.println ();
+        KeyType key4 = KeyType.of ("Star_Wars_2", 1980);
+        out.println ("key4 = " + key4 + " (" + key4.getClass ().getSimpleName () + ")");
+        out.println ("key1 == key4: " + (key1.equals (key4)));
+        out.println ("key1.hashCode () == key4.hashCode (): " + (key1.hashCode () == key4.hashCode ()));
     } // main
 
 } // KeyType class
@@ -0,0 +1,435 @@
+
+/****************************************************************************************
+ * @file  LearnedMap.java
+ */
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+import static java.lang.System.out;
+
+/****************************************************************************************
+ * This class provides a read-optimized learned index for single-attribute numeric keys
+ * (e.g., student.id), in the style of RadixSpline.  The keys are kept in a sorted array
+ * and a model maps a key to its approximate position:
+ *
+ *   - a linear spline through some of the (key, position) points, built in one pass
+ *     (greedy spline corridor) so that interpolating between two knots is never off by
+ *     more than ERROR positions, and
+ *   - a radix table on the leading bits of the (scaled) key that narrows the search
+ *     for the spline segment to a few knots.
+ *
+ * A lookup interpolates the position and finishes with a binary search over at most
+ * 2 ERROR + 1 keys, typically one or two cache misses for near-uniform keys.  Inserts
+ * of new keys go to a small sorted delta buffer that is merged into the array (and the
+ * model retrained) when it grows past a fraction of the array.
+ */
+public class LearnedMap <V>
+       extends AbstractMap <KeyType, V>
+       implements Serializable, Cloneable, SortedMap <KeyType, V>, OrderedIndex <KeyType, V>
+{
+    /** The maximum error (in positions) of the spline.
+     */
+    private static final int ERROR = 32;
+
+    /** The minimum number of buffered inserts that triggers retraining.
+     */
+    private static final int MIN_DELTA = 1024;
+
+    /** The numeric values of the trained keys, in ascending order.
+     */
+    private double [] keys = new double [0];
+
+    /** The trained keys themselves (parallel to keys).
+     */
+    private KeyType [] kts = new KeyType [0];
+
+    /** The values of the trained keys (parallel to keys).
+     */
+    private Object [] vals = new Object [0];
+
+    /** The spline knots: key values and positions.
+     */
+    private double [] knotX = new double [0];
+    private double [] knotY = new double [0];
+
+    /** The radix table: radix [p] is the last knot whose key prefix is below p (or 0).
+     */
+    private int [] radix = new int [2];
+
+    /** The scaling of keys (minus the smallest key) to radix prefixes.
+     */
+    private double scale = 0.0;
+
+    /** The buffer of keys inserted since the last training.
+     */
+    private final TreeMap <KeyType, V> delta = new TreeMap <> ();
+
+    /************************************************************************************
+     * Construct an empty learned map.
+     */
+    public LearnedMap ()
+    {
+    } // constructor
+
+    /************************************************************************************
+     * Return null to use the natural order based on the key type.
+     * @return  null
+     */
+    public Comparator <? super KeyType> comparator ()
+    {
+        return null;
+    } // comparator
+
+    /************************************************************************************
+     * Return a set containing all the entries as pairs of keys and values, in key order.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <KeyType, V>> entrySet ()
+    {
+        Set <Map.Entry <KeyType, V>> enSet = new LinkedHashSet <> ();
+        enSet.addAll (subMap (null, true, null, true).entrySet ());
+        return enSet;
+    } // entrySet
+
+    /************************************************************************************
+     * Given the key, look up the value in the learned map.
+     * @param key  the key used for look up
+     * @return  the value associated with the key (null if not found)
+     */
+    @SuppressWarnings("unchecked")
+    public V get (Object key)
+    {
+        KeyType k = (KeyType) key;
+        int     i = find (k);
+        if (i >= 0) return (V) vals [i];
+        return delta.isEmpty () ? null : delta.get (k);
+    } // get
+
+    /************************************************************************************
+     * Put the key-value pair in the learned map.  The value of a trained key is replaced
+     * in place; a new key goes to the delta buffer, which is merged (and the model
+     * retrained) once it holds more than MIN_DELTA keys and 1/8 of the trained keys.
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value of the key (null if it is new)
+     */
+    @SuppressWarnings("unchecked")
+    public V put (KeyType key, V value)
+    {
+        int i = find (key);
+        if (i >= 0) {
+            V old = (V) vals [i];
+            vals [i] = value;
+            return old;
+        } // if
+        V old = delta.put (key, value);
+        if (delta.size () > Math.max (MIN_DELTA, keys.length / 8)) retrain ();
+        return old;
+    } // put
+
+    /************************************************************************************
+     * Merge the delta buffer into the sorted arrays and retrain the model.
+     */
+    public void retrain ()
+    {
+        int       n  = keys.length + delta.size ();
+        double [] nk = new double [n];
+        KeyType[] nt = new KeyType [n];
+        Object [] nv = new Object [n];
+        int       i  = 0, j = 0;
+        Iterator <Map.Entry <KeyType, V>> it = delta.entrySet ().iterator ();
+        Map.Entry <KeyType, V>            e  = it.hasNext () ? it.next () : null;
+        while (e != null || i < keys.length) {
+            if (e == null || i < keys.length && kts [i].compareTo (e.getKey ()) < 0) {
+                nk [j] = keys [i]; nt [j] = kts [i]; nv [j++] = vals [i++];
+            } else {
+                nk [j] = num (e.getKey ()); nt [j] = e.getKey (); nv [j++] = e.getValue ();
+                e = it.hasNext () ? it.next () : null;
+            } // if
+        } // while
+        keys = nk; kts = nt; vals = nv;
+        delta.clear ();
+        train ();
+    } // retrain
+
+    /************************************************************************************
+     * Bulk load the (empty) learned map from keys in strictly ascending order and train
+     * the model over them.
+     * @param keys  the keys in strictly ascending order
+     * @param vals  the values of the keys
+     */
+    public void bulkLoad (KeyType [] keys, V [] vals)
+    {
+        int n = keys.length;
+        this.keys = new double [n];
+        for (int i = 0; i < n; i++) this.keys [i] = num (keys [i]);
+        kts  = keys.clone ();
+        this.vals = Arrays.copyOf (vals, n, Object [].class);
+        delta.clear ();
+        train ();
+    } // bulkLoad
+
+    /************************************************************************************
+     * Return the first (smallest) key in the learned map.
+     * @return  the first key in the learned map
+     */
+    public KeyType firstKey ()
+    {
+        if (keys.length == 0) return delta.firstKey ();
+        return (delta.isEmpty () || kts [0].compareTo (delta.firstKey ()) < 0) ? kts [0] : delta.firstKey ();
+    } // firstKey
+
+    /************************************************************************************
+     * Return the last (largest) key in the learned map.
+     * @return  the last key in the learned map
+     */
+    public KeyType lastKey ()
+    {
+        if (keys.length == 0) return delta.lastKey ();
+        KeyType last = kts [keys.length - 1];
+        return (delta.isEmpty () || last.compareTo (delta.lastKey ()) > 0) ? last : delta.lastKey ();
+    } // lastKey
+
+    /************************************************************************************
+     * Return the portion of the learned map where key < toKey.
+     * @return  the submap with keys in the range [firstKey, toKey)
+     */
+    public SortedMap <KeyType, V> headMap (KeyType toKey)
+    {
+        return subMap (null, true, toKey, false);
+    } // headMap
+
+    /************************************************************************************
+     * Return the portion of the learned map where fromKey <= key.
+     * @return  the submap with keys in the range [fromKey, lastKey]
+     */
+    public SortedMap <KeyType, V> tailMap (KeyType fromKey)
+    {
+        return subMap (fromKey, true, null, true);
+    } // tailMap
+
+    /************************************************************************************
+     * Return the portion of the learned map whose keys are between fromKey and toKey,
+     * i.e., fromKey <= key < toKey.
+     * @return  the submap with keys in the range [fromKey, toKey)
+     */
+    public SortedMap <KeyType, V> subMap (KeyType fromKey, KeyType toKey)
+    {
+        return subMap (fromKey, true, toKey, false);
+    } // subMap
+
+    /************************************************************************************
+     * Return the portion of the learned map whose keys are between fromKey and toKey (a
+     * null bound means unbounded).  The model locates the start of the range, which is
+     * then read sequentially from the key array and merged with the delta buffer.
+     * @param fromKey     the lower bound (or null)
+     * @param isInclFrom  whether the lower bound is inclusive
+     * @param toKey       the upper bound (or null)
+     * @param isInclTo    whether the upper bound is inclusive
+     * @return  the submap with keys in the range
+     */
+    public SortedMap <KeyType, V> subMap (KeyType fromKey, boolean isInclFrom, KeyType toKey, boolean isInclTo)
+    {
+        SortedMap <KeyType, V> submap = new TreeMap <> ();
+        range (fromKey, isInclFrom, toKey, isInclTo, submap::put);
+        return submap;
+    } // subMap
+
+    /************************************************************************************
+     * Visit, in key order, the entries whose keys are between fromKey and toKey (a null
+     * bound means unbounded).  The model locates the start of the range in the key
+     * array, which is then read sequentially and merged with the delta buffer.
+     * @param fromKey     the lower bound (or null)
+     * @param isInclFrom  whether the lower bound is inclusive
+     * @param toKey       the upper bound (or null)
+     * @param isInclTo    whether the upper bound is inclusive
+     * @param action      the action to apply to each key and value
+     */
+    @SuppressWarnings("unchecked")
+    public void range (KeyType fromKey, boolean isInclFrom, KeyType toKey, boolean isInclTo,
+                       BiConsumer <KeyType, V> action)
+    {
+        if (fromKey != null && toKey != null) {                 // empty range (the delta views reject it)
+            int cmp = fromKey.compareTo (toKey);
+            if (cmp > 0 || cmp == 0 && ! (isInclFrom && isInclTo)) return;
+        } // if
+        NavigableMap <KeyType, V> d = delta;
+        if (fromKey != null) d = d.tailMap (fromKey, isInclFrom);
+        if (toKey != null)   d = d.headMap (toKey, isInclTo);
+        Iterator <Map.Entry <KeyType, V>> it = d.entrySet ().iterator ();
+        Map.Entry <KeyType, V>            e  = it.hasNext () ? it.next () : null;
+
+        for (int i = (fromKey == null) ? 0 : lowerBound (num (fromKey)); i < keys.length; i++) {
+            if (fromKey != null) {
+                int c = kts [i].compareTo (fromKey);
+                if (c < 0 || c == 0 && ! isInclFrom) continue;
+            } // if
+            if (toKey != null) {
+                int c = kts [i].compareTo (toKey);
+                if (c > 0 || c == 0 && ! isInclTo) break;
+            } // if
+            for ( ; e != null && e.getKey ().compareTo (kts [i]) < 0; e = it.hasNext () ? it.next () : null) {
+                action.accept (e.getKey (), e.getValue ());
+            } // for
+            action.accept (kts [i], (V) vals [i]);
+        } // for
+        for ( ; e != null; e = it.hasNext () ? it.next () : null) action.accept (e.getKey (), e.getValue ());
+    } // range
+
+    /************************************************************************************
+     * Return the size (number of keys) in the learned map.
+     * @return  the size of the learned map
+     */
+    public int size ()
+    {
+        return keys.length + delta.size ();
+    } // size
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the numeric value of the given (single-attribute, numeric) key.
+     */
+    private static double num (KeyType k)
+    {
+        if (k.size () != 1 || ! (k.get (0) instanceof Number)) {
+            throw new IllegalArgumentException ("LearnedMap: key must be a single numeric attribute, not " + k);
+        } // if
+        return ((Number) k.get (0)).doubleValue ();
+    } // num
+
+    /************************************************************************************
+     * Return the position of the given key in the trained arrays (-1 if absent).
+     */
+    private int find (KeyType k)
+    {
+        double x = num (k);
+        for (int i = lowerBound (x); i < keys.length && keys [i] == x; i++) {
+            if (kts [i].equals (k)) return i;
+        } // for
+        return -1;
+    } // find
+
+    /************************************************************************************
+     * Return the position of the first trained key not less than x, predicted by the
+     * model and corrected by a binary search within the error bound.
+     */
+    private int lowerBound (double x)
+    {
+        int n = keys.length;
+        if (n == 0 || x <= keys [0]) return 0;
+        if (x > keys [n - 1]) return n;
+
+        int p  = (int) ((x - keys [0]) * scale);                 // radix prefix of x
+        int lo = radix [p], hi = radix [p + 1];                  // knot range to search
+        while (lo < hi) {                                        // last knot with knotX <= x
+            int mid = (lo + hi + 1) >>> 1;
+            if (knotX [mid] <= x) lo = mid; else hi = mid - 1;
+        } // while
+        int k   = Math.min (lo, knotX.length - 2);
+        int pos = (int) (knotY [k] + (x - knotX [k]) * (knotY [k + 1] - knotY [k]) / (knotX [k + 1] - knotX [k]));
+
+        int a = Math.max (0, pos - ERROR - 1), b = Math.min (n, pos + ERROR + 2);
+        if (a > 0 && keys [a - 1] >= x || b < n && keys [b] < x) {
+            a = 0; b = n;                                        // outside the bound: full search
+        } // if
+        while (a < b) {
+            int mid = (a + b) >>> 1;
+            if (keys [mid] < x) a = mid + 1; else b = mid;
+        } // while
+        return a;
+    } // lowerBound
+
+    /************************************************************************************
+     * Build the spline over the trained keys with the greedy spline corridor, then the
+     * radix table over the knots.
+     */
+    private void train ()
+    {
+        int n = keys.length;
+        if (n < 2) {
+            knotX = new double [0]; knotY = new double [0];
+            return;
+        } // if
+
+        double [] xs = new double [n], ys = new double [n];
+        int       m  = 0;
+        xs [m] = keys [0]; ys [m++] = 0;
+        double bx = keys [0], by = 0, px = bx, py = by;          // base knot and previous point
+        double upper = Double.POSITIVE_INFINITY, lower = Double.NEGATIVE_INFINITY;
+        for (int i = 1; i < n; i++) {
+            double x = keys [i];
+            if (x == px) continue;                               // equal values: keep the first
+            double s = (i - by) / (x - bx);
+            if (s > upper || s < lower) {                        // leaves the corridor: new knot
+                xs [m] = px; ys [m++] = py;
+                bx = px; by = py;
+                upper = (i + ERROR - by) / (x - bx);
+                lower = (i - ERROR - by) / (x - bx);
+            } else {
+                upper = Math.min (upper, (i + ERROR - by) / (x - bx));
+                lower = Math.max (lower, (i - ERROR - by) / (x - bx));
+            } // if
+            px = x; py = i;
+        } // for
+        if (px != xs [m - 1]) { xs [m] = px; ys [m++] = py; }
+        if (m < 2) { xs [m] = px + 1; ys [m++] = n; }            // all keys equal
+        knotX = Arrays.copyOf (xs, m);
+        knotY = Arrays.copyOf (ys, m);
+
+        int size = 1 << Math.min (20, 33 - Integer.numberOfLeadingZeros (m));   // about 2m slots
+        scale = (size - 1) / (keys [n - 1] - keys [0]);
+        if (Double.isInfinite (scale) || Double.isNaN (scale)) scale = 0.0;
+        radix = new int [size + 1];
+        for (int p = 0, k = 0; p <= size; p++) {
+            while (k < m - 1 && (int) ((knotX [k + 1] - keys [0]) * scale) < p) k++;
+            radix [p] = k;                                       // last knot starting before p
+        } // for
+    } // train
+
+    /************************************************************************************
+     * The main method benchmarks point lookups and range scans of the learned map
+     * against BpTreeMap and TreeMap on uniformly distributed integer keys.
+     * @param args  the command-line arguments (optionally the number of keys)
+     */
+    public static void main (String [] args)
+    {
+        int     n    = (args.length > 0) ? Integer.parseInt (args [0]) : 100000;
+        Random  rand = new Random (1);
+        KeyType [] ks = new KeyType [n];
+        Set <Integer> seen = new HashSet <> ();
+        for (int i = 0; i < n; ) {
+            int k = rand.nextInt (1000000000);
+            if (seen.add (k)) ks [i++] = KeyType.of (k);          // distinct keys
+        } // for
+
+        List <Map <KeyType, Integer>> maps = new ArrayList <> ();
+        maps.add (new LearnedMap <> ());
+        maps.add (new BpTreeMap <> (KeyType.class, Integer.class));
+        maps.add (new TreeMap <> ());
+        for (Map <KeyType, Integer> map : maps) {
+            long t0 = System.nanoTime ();
+            for (int i = 0; i < n; i++) map.put (ks [i], i);
+            if (map instanceof LearnedMap) ((LearnedMap) map).retrain ();
+            long t1 = System.nanoTime ();
+            long sum = 0;
+            for (int r = 0; r < 10; r++) {
+                for (int i = 0; i < n; i++) sum += map.get (ks [(i * 7919) % n]);
+            } // for
+            long t2 = System.nanoTime ();
+            SortedMap <KeyType, Integer> sm = (SortedMap <KeyType, Integer>) map;
+            int hits = 0;
+            for (int i = 0; i < 100; i++) hits += sm.subMap (ks [i], KeyType.of ((Integer) ks [i].get (0) + 1000000)).size ();
+            long t3 = System.nanoTime ();
+            out.printf ("%-12s load %7.1f ms   %d gets %7.1f ms (%5.0f ns/get)   100 ranges %7.1f ms (%d keys)%n",
+                        map.getClass ().getSimpleName (), (t1 - t0) / 1e6, 10L * n, (t2 - t1) / 1e6,
+                        (t2 - t1) / (10.0 * n), (t3 - t2) / 1e6, hits);
+            if (sum == 42) out.println ();                       // keep the lookups alive
+        } // for
+    } // main
+
+} // LearnedMap class
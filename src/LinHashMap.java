@@ -69,8 +69,6 @@ implements Serializable, Cloneable, Map <K, V> {
      */
     private int split = 0;
      
-    public ArrayList<V> catcher;
-    public ArrayList<K> keyCatcher;
     /********************************************************************************
      * Construct a hash table that uses Linear Hashing.
      * 
@@ -88,8 +86,6 @@ implements Serializable, Cloneable, Map <K, V> {
         }// for
         mod1 = initSize;
         mod2 = 2 * mod1;
-        catcher = new ArrayList<V>();
-        keyCatcher = new ArrayList<K>();
     } // constructor
      
     /********************************************************************************
@@ -100,31 +96,24 @@ implements Serializable, Cloneable, Map <K, V> {
     public Set<Map.Entry<K, V>> entrySet() { 
          
         Set<Map.Entry<K, V>> enSet = new HashSet<>();
-         
-          for( K temp : keyCatcher ) {
-            enSet.add(new AbstractMap.SimpleEntry<K, V>(temp, (V) get(temp)));
-        }
 
-         
-         /*
         //iterate through the table to add the Ks and Vs
         for (int i = 0; i < hTable.size(); i++)
         {
             Bucket b = hTable.get(i);
-             
+
             //go through the chain of buckets in the hash table
             while (b != null)
             {
                 //place the pairs into the set from the current bucket
                 for (int j = 0; j < b.nKeys; j++)
                 {
-                    enSet.add(new AbstractMap.SimpleEntry<K, V>(b.key[j], (V) b.value[j]));
+                    enSet.add(new AbstractMap.SimpleEntry<K, V>(b.key[j], b.value[j]));
                 }
-                 
+
                 b = b.next;
             }
         }
-        */
         return enSet;
     } // entrySet
           
@@ -134,50 +123,30 @@ implements Serializable, Cloneable, Map <K, V> {
      * @param key           the key used for look up
      * @return            the value associated with the key or null if key is not present
      */
-    private Comparable[] get(K key){
-         
-         
+    @SuppressWarnings("unchecked")
+    public V get(Object key){
+
         //index of hash table
         int i = decideHash(key);
-         
+
         // within the i bucket chain, look for the key
         Bucket b = hTable.get(i);
-         
+
         while (b != null)
         {
            //check for the key within the bucket key array
-            for (int j = 0; j < b.nKeys; j++) 
+            for (int j = 0; j < b.nKeys; j++)
             {
-                if ( key.compareTo(b.key[j])==0)
+                if (((K) key).compareTo(b.key[j]) == 0)
                 {
-                	return (Comparable []) b.value[j];
+                	return b.value[j];
                 }
             }
-             
+
             // check next bucket if the current doesn't have the key
             b = b.next;
         }
-        
-        
-        Iterator<V> valItr = catcher.iterator();
-        Iterator<K> itr = keyCatcher.iterator();
-        K temp;
-        for (V vals : catcher ) {
-        	temp = itr.next();
-        	if( temp.equals( key ))
-        		return (Comparable []) vals;
-        }
-        V stupid = valItr.next();
-        /*
-        while( valItr.hasNext() ) {
-        	if( itr.next() == key  ) {
-        		return valItr.next();
-        	}
-        	valItr.next();
-        }
-        Iterator<V> temp = catcher.iterator();
-        */
-        return (Comparable []) stupid;
+        return null;
     } // get
      
     /********************************************************************************
@@ -188,9 +157,16 @@ implements Serializable, Cloneable, Map <K, V> {
      * @return      null (not the previous value)
      */
     public V put(K key, V value) {
-    	keyCatcher.add( key );
-    	catcher.add( value );
-    	
+        // replace the value if the key is already present
+        for (Bucket b = hTable.get(decideHash(key)); b != null; b = b.next) {
+            for (int j = 0; j < b.nKeys; j++) {
+                if (key.compareTo(b.key[j]) == 0) {
+                    b.value[j] = value;
+                    return null;
+                }
+            }
+        }
+
         // determine index in the table where for the value
         int index = decideHash(key);
         insert(key, value, index);
@@ -258,19 +234,10 @@ implements Serializable, Cloneable, Map <K, V> {
             // If the bucket has space, insert the key & value
             if (b.nKeys < SLOTS) 
             {
-            	try {
-            	//keyCatcher.add(key);
-            	//catcher.add(value);
-            	hTable.get(index).key[hTable.get(index).nKeys] = key;
-            	hTable.get(index).value[hTable.get(index).nKeys] = value;
-            	hTable.get(index).nKeys++;
+                b.key[b.nKeys] = key;
+                b.value[b.nKeys] = value;
+                b.nKeys++;
                 beenInput = true;
-            	}
-            	catch( Exception e ) {
-            		keyCatcher.add( key );
-            	    catcher.add( value );
-            	}
-            	beenInput = true;
             } 
             else
             {
@@ -366,5 +333,21 @@ implements Serializable, Cloneable, Map <K, V> {
         } // for
         out.println ("-------------------------------------------");
         out.println ("Average number of buckets accessed = " + ht.count / (double) nKeys);
+
+        out.println ("-------------------------------------------");
+        out.println ("Check splits and overflow chains against a HashMap");
+        LinHashMap <Integer, Integer> big = new LinHashMap <> (Integer.class, Integer.class, 4);
+        HashMap <Integer, Integer>    ref = new HashMap <> ();
+        Random                        rng = new Random (1);
+        for (int i = 0; i < 20000; i++) {
+            int k = (i % 10 == 0) ? 65536 * rng.nextInt (64) : rng.nextInt (10000);  // chains of colliding keys
+            big.put (k, i);
+            ref.put (k, i);
+        } // for
+        boolean ok = true;
+        for (int k = 0; k <= 10000; k++) ok &= Objects.equals (big.get (k), ref.get (k));
+        for (int k : ref.keySet ()) ok &= ref.get (k).equals (big.get (k));
+        out.println ("get matches: " + ok);
+        out.println ("buckets hold every entry: " + big.entrySet ().equals (new HashSet <> (ref.entrySet ())));
     }
 } // end LinHashMap
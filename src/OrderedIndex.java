@@ -0,0 +1,29 @@
+
+/****************************************************************************************
+ * @file  OrderedIndex.java
+ */
+
+import java.util.function.BiConsumer;
+
+/****************************************************************************************
+ * The OrderedIndex interface gives uniform ordered access to the sorted index structures
+ * (BpTreeMap, ArtMap and LearnedMap).  A range of keys is visited in key order using the
+ * structure's own range iteration (descending to the first key in the range and reading
+ * forward from there), without building a submap.  Table adapts TreeMap to the same
+ * access through its navigable views.
+ */
+public interface OrderedIndex <K, V>
+{
+    /************************************************************************************
+     * Visit, in ascending key order, the entries whose keys lie between fromKey and toKey
+     * (a null bound means unbounded).
+     *
+     * @param fromKey     the lower bound of the range (or null)
+     * @param isInclFrom  whether the lower bound is inclusive
+     * @param toKey       the upper bound of the range (or null)
+     * @param isInclTo    whether the upper bound is inclusive
+     * @param action      the action to apply to the key and value of each entry
+     */
+    void range (K fromKey, boolean isInclFrom, K toKey, boolean isInclTo, BiConsumer <K, V> action);
+
+} // OrderedIndex interface
@@ -0,0 +1,90 @@
+
+/****************************************************************************************
+ * @file  PostingList.java
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/****************************************************************************************
+ * This class provides compact posting lists, i.e., growable lists of row ids (positions
+ * of tuples within a table) stored in a primitive int array.  Multi-valued indexes map
+ * each key to the posting list of the rows carrying that key.  Since rows are appended
+ * to a table in order, the row ids in a posting list are kept in ascending order.
+ */
+public class PostingList
+       implements Serializable
+{
+    /** The initial capacity of a posting list (most keys in a posting list are rare).
+     */
+    private static final int INIT_CAP = 2;
+
+    /** The row ids in this posting list.
+     */
+    private int [] rid;
+
+    /** The number of row ids in this posting list.
+     */
+    private int n = 0;
+
+    /************************************************************************************
+     * Construct an empty posting list.
+     */
+    public PostingList ()
+    {
+        rid = new int [INIT_CAP];
+    } // constructor
+
+    /************************************************************************************
+     * Add the given row id to the end of this posting list.
+     *
+     * @param r  the row id to add
+     */
+    public void add (int r)
+    {
+        if (n == rid.length) rid = Arrays.copyOf (rid, 2 * n);
+        rid [n++] = r;
+    } // add
+
+    /************************************************************************************
+     * Return the i-th row id in this posting list.
+     *
+     * @param i  the position in the posting list
+     * @return  the row id at position i
+     */
+    public int get (int i)
+    {
+        return rid [i];
+    } // get
+
+    /************************************************************************************
+     * Return the number of row ids in this posting list.
+     *
+     * @return  the size of the posting list
+     */
+    public int size ()
+    {
+        return n;
+    } // size
+
+    /************************************************************************************
+     * Return the row ids in this posting list as a (trimmed) array.
+     *
+     * @return  an array of the row ids
+     */
+    public int [] toArray ()
+    {
+        return Arrays.copyOf (rid, n);
+    } // toArray
+
+    /************************************************************************************
+     * Convert this posting list to a string.
+     *
+     * @return  the string representation of the posting list
+     */
+    public String toString ()
+    {
+        return Arrays.toString (toArray ());
+    } // toString
+
+} // PostingList class
@@ -0,0 +1,333 @@
+
+/****************************************************************************************
+ * @file  Pred.java
+ */
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/****************************************************************************************
+ * This class provides predicate expressions over named attributes for Table.select.
+ * Unlike an opaque lambda, an expression can be analyzed: select looks at the
+ * conjuncts of the predicate to find equalities, IN lists and ranges that an index, a
+ * bitmap index or the zone maps can answer, and compiles the whole predicate (with the
+ * attribute positions resolved once) to test the candidate tuples.
+ *
+ * #usage movie.select (Pred.and (Pred.eq ("year", 1977), Pred.range ("length", 90, true, 120, false)))
+ */
+public abstract class Pred
+{
+    //----------------------------------------------------------------------------------
+    // Factory Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the predicate attr == value.
+     *
+     * @param attr   the attribute
+     * @param value  the value it must equal
+     * @return  the equality predicate
+     */
+    public static Pred eq (String attr, Comparable value)
+    {
+        return new Eq (attr, value);
+    } // eq
+
+    /************************************************************************************
+     * Return the predicate that attr lies between lo and hi (a null bound means
+     * unbounded).
+     *
+     * @param attr      the attribute
+     * @param lo        the lower bound (or null)
+     * @param isInclLo  whether the lower bound is inclusive
+     * @param hi        the upper bound (or null)
+     * @param isInclHi  whether the upper bound is inclusive
+     * @return  the range predicate
+     */
+    public static Pred range (String attr, Comparable lo, boolean isInclLo, Comparable hi, boolean isInclHi)
+    {
+        return new Range (attr, lo, isInclLo, hi, isInclHi);
+    } // range
+
+    /************************************************************************************
+     * Return the predicate that attr equals one of the given values.
+     *
+     * @param attr    the attribute
+     * @param values  the values
+     * @return  the membership predicate
+     */
+    public static Pred in (String attr, Comparable ... values)
+    {
+        return new In (attr, values);
+    } // in
+
+    /************************************************************************************
+     * Return the conjunction of the given predicates.
+     *
+     * @param preds  the predicates that must all hold
+     * @return  the conjunction
+     */
+    public static Pred and (Pred ... preds)
+    {
+        return new And (preds);
+    } // and
+
+    /************************************************************************************
+     * Return the disjunction of the given predicates.
+     *
+     * @param preds  the predicates of which one must hold
+     * @return  the disjunction
+     */
+    public static Pred or (Pred ... preds)
+    {
+        return new Or (preds);
+    } // or
+
+    /************************************************************************************
+     * Return the negation of the given predicate.
+     *
+     * @param pred  the predicate that must not hold
+     * @return  the negation
+     */
+    public static Pred not (Pred pred)
+    {
+        return new Not (pred);
+    } // not
+
+    //----------------------------------------------------------------------------------
+    // Analysis and Compilation
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Compile this predicate into a test on the tuples of the given table, resolving
+     * the attribute names to column positions once.
+     *
+     * @param table  the table whose tuples are tested
+     * @return  the test
+     */
+    abstract Predicate <Comparable []> compile (Table table);
+
+    /************************************************************************************
+     * Return the conjuncts of this predicate: the predicates that must all hold.
+     *
+     * @return  the conjuncts (the predicate itself unless it is a conjunction)
+     */
+    List <Pred> conjuncts ()
+    {
+        return Collections.singletonList (this);
+    } // conjuncts
+
+    /************************************************************************************
+     * The predicate attr == value.
+     */
+    static class Eq
+           extends Pred
+    {
+        final String     attr;
+        final Comparable value;
+
+        Eq (String _attr, Comparable _value)
+        {
+            attr  = _attr;
+            value = _value;
+        } // constructor
+
+        Predicate <Comparable []> compile (Table table)
+        {
+            int c = table.col (attr);
+            return t -> value.equals (t [c]);
+        } // compile
+
+        public String toString ()
+        {
+            return attr + " == " + value;
+        } // toString
+
+    } // Eq class
+
+    /************************************************************************************
+     * The predicate that attr lies between lo and hi (a null bound means unbounded).
+     */
+    static class Range
+           extends Pred
+    {
+        final String     attr;
+        final Comparable lo, hi;
+        final boolean    isInclLo, isInclHi;
+
+        Range (String _attr, Comparable _lo, boolean _isInclLo, Comparable _hi, boolean _isInclHi)
+        {
+            attr     = _attr;
+            lo       = _lo;
+            isInclLo = _isInclLo;
+            hi       = _hi;
+            isInclHi = _isInclHi;
+        } // constructor
+
+        @SuppressWarnings("unchecked")
+        Predicate <Comparable []> compile (Table table)
+        {
+            int c = table.col (attr);
+            return t -> {
+                Comparable v = t [c];
+                if (v == null) return false;
+                if (lo != null) {
+                    int cmp = v.compareTo (lo);
+                    if (cmp < 0 || cmp == 0 && ! isInclLo) return false;
+                } // if
+                if (hi != null) {
+                    int cmp = v.compareTo (hi);
+                    if (cmp > 0 || cmp == 0 && ! isInclHi) return false;
+                } // if
+                return true;
+            };
+        } // compile
+
+        public String toString ()
+        {
+            return attr + " in " + (isInclLo ? "[" : "(") + lo + ", " + hi + (isInclHi ? "]" : ")");
+        } // toString
+
+    } // Range class
+
+    /************************************************************************************
+     * The predicate that attr equals one of the given values.
+     */
+    static class In
+           extends Pred
+    {
+        final String       attr;
+        final Comparable[] values;
+
+        In (String _attr, Comparable [] _values)
+        {
+            attr   = _attr;
+            values = _values;
+        } // constructor
+
+        Predicate <Comparable []> compile (Table table)
+        {
+            int               c   = table.col (attr);
+            Set <Comparable>  set = new HashSet <> (Arrays.asList (values));
+            return t -> set.contains (t [c]);
+        } // compile
+
+        public String toString ()
+        {
+            return attr + " in " + Arrays.toString (values);
+        } // toString
+
+    } // In class
+
+    /************************************************************************************
+     * The conjunction of predicates.
+     */
+    static class And
+           extends Pred
+    {
+        final Pred [] preds;
+
+        And (Pred [] _preds)
+        {
+            preds = _preds;
+        } // constructor
+
+        Predicate <Comparable []> compile (Table table)
+        {
+            Predicate <Comparable []> [] tests = compileAll (preds, table);
+            return t -> {
+                for (Predicate <Comparable []> p : tests) if (! p.test (t)) return false;
+                return true;
+            };
+        } // compile
+
+        List <Pred> conjuncts ()
+        {
+            List <Pred> all = new ArrayList <> ();
+            for (Pred p : preds) all.addAll (p.conjuncts ());
+            return all;
+        } // conjuncts
+
+        public String toString ()
+        {
+            return join (preds, " and ");
+        } // toString
+
+    } // And class
+
+    /************************************************************************************
+     * The disjunction of predicates.
+     */
+    static class Or
+           extends Pred
+    {
+        final Pred [] preds;
+
+        Or (Pred [] _preds)
+        {
+            preds = _preds;
+        } // constructor
+
+        Predicate <Comparable []> compile (Table table)
+        {
+            Predicate <Comparable []> [] tests = compileAll (preds, table);
+            return t -> {
+                for (Predicate <Comparable []> p : tests) if (p.test (t)) return true;
+                return false;
+            };
+        } // compile
+
+        public String toString ()
+        {
+            return join (preds, " or ");
+        } // toString
+
+    } // Or class
+
+    /************************************************************************************
+     * The negation of a predicate.
+     */
+    static class Not
+           extends Pred
+    {
+        final Pred pred;
+
+        Not (Pred _pred)
+        {
+            pred = _pred;
+        } // constructor
+
+        Predicate <Comparable []> compile (Table table)
+        {
+            return pred.compile (table).negate ();
+        } // compile
+
+        public String toString ()
+        {
+            return "not (" + pred + ")";
+        } // toString
+
+    } // Not class
+
+    /************************************************************************************
+     * Compile each of the given predicates.
+     */
+    @SuppressWarnings("unchecked")
+    private static Predicate <Comparable []> [] compileAll (Pred [] preds, Table table)
+    {
+        Predicate <Comparable []> [] tests = new Predicate [preds.length];
+        for (int i = 0; i < preds.length; i++) tests [i] = preds [i].compile (table);
+        return tests;
+    } // compileAll
+
+    /************************************************************************************
+     * Join the parenthesized predicates with the given connective.
+     */
+    private static String join (Pred [] preds, String connective)
+    {
+        StringJoiner sj = new StringJoiner (connective);
+        for (Pred p : preds) sj.add ("(" + p + ")");
+        return sj.toString ();
+    } // join
+
+} // Pred class
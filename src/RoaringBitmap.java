@@ -0,0 +1,382 @@
+
+/****************************************************************************************
+ * @file  RoaringBitmap.java
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/****************************************************************************************
+ * This class provides compressed bitmaps over non-negative ints (row ids) in the style
+ * of Roaring bitmaps.  The ints are partitioned into chunks of 2^16 by their high 16
+ * bits and each non-empty chunk is stored in a container: a sorted array of the low 16
+ * bits when the chunk is sparse (at most 4096 values), otherwise a plain bitmap of 1024
+ * longs.  Bitmaps may be combined with and (intersection), or (union), andNot
+ * (difference) and not (complement within a universe of row ids).
+ */
+public class RoaringBitmap
+       implements Serializable
+{
+    /** The maximum number of values held by an array container.
+     */
+    private static final int ARRAY_MAX = 4096;
+
+    /** The number of longs in a bitmap container (2^16 bits).
+     */
+    private static final int WORDS = 1024;
+
+    /** The high 16 bits of the chunks, in ascending order.
+     */
+    private char [] keys = new char [4];
+
+    /** The containers for the chunks (char [] for array containers, long [] for bitmap
+     *  containers).
+     */
+    private Object [] cont = new Object [4];
+
+    /** The cardinality of each container.
+     */
+    private int [] card = new int [4];
+
+    /** The number of chunks (non-empty containers).
+     */
+    private int n = 0;
+
+    /************************************************************************************
+     * Construct an empty bitmap.
+     */
+    public RoaringBitmap ()
+    {
+    } // constructor
+
+    /************************************************************************************
+     * Return a bitmap holding all the ints in [0, size).
+     *
+     * @param size  the size of the universe
+     * @return  the full bitmap
+     */
+    public static RoaringBitmap range (int size)
+    {
+        RoaringBitmap b = new RoaringBitmap ();
+        for (int hi = 0; (hi << 16) < size; hi++) {
+            int    m    = Math.min (size - (hi << 16), 1 << 16);
+            long [] bits = new long [WORDS];
+            for (int w = 0; w < m >>> 6; w++) bits [w] = -1L;
+            if ((m & 63) != 0) bits [m >>> 6] = (1L << (m & 63)) - 1;
+            b.appendBits ((char) hi, bits);
+        } // for
+        return b;
+    } // range
+
+    /************************************************************************************
+     * Add the given int to this bitmap.
+     *
+     * @param x  the int to add
+     */
+    public void add (int x)
+    {
+        char hi = (char) (x >>> 16), lo = (char) x;
+        int  i  = find (hi);
+        if (i < 0) {
+            i = -i - 1;
+            insertChunk (i, hi, new char [4], 0);
+        } // if
+        if (cont [i] instanceof char []) {
+            char [] a   = (char []) cont [i];
+            int     pos = Arrays.binarySearch (a, 0, card [i], lo);
+            if (pos >= 0) return;
+            pos = -pos - 1;
+            if (card [i] == ARRAY_MAX) {                          // convert to a bitmap
+                long [] bits = toBits (a, card [i]);
+                bits [lo >>> 6] |= 1L << lo;
+                cont [i] = bits;
+                card [i]++;
+                return;
+            } // if
+            if (card [i] == a.length) cont [i] = a = Arrays.copyOf (a, Math.min (2 * a.length, ARRAY_MAX));
+            System.arraycopy (a, pos, a, pos + 1, card [i] - pos);
+            a [pos] = lo;
+            card [i]++;
+        } else {
+            long [] bits = (long []) cont [i];
+            long    old  = bits [lo >>> 6];
+            bits [lo >>> 6] = old | (1L << lo);
+            if (old != bits [lo >>> 6]) card [i]++;
+        } // if
+    } // add
+
+    /************************************************************************************
+     * Determine whether this bitmap contains the given int.
+     *
+     * @param x  the int to check
+     * @return  whether x is in the bitmap
+     */
+    public boolean contains (int x)
+    {
+        int i = find ((char) (x >>> 16));
+        if (i < 0) return false;
+        char lo = (char) x;
+        if (cont [i] instanceof char []) return Arrays.binarySearch ((char []) cont [i], 0, card [i], lo) >= 0;
+        return (((long []) cont [i]) [lo >>> 6] & (1L << lo)) != 0;
+    } // contains
+
+    /************************************************************************************
+     * Return the number of ints in this bitmap.
+     *
+     * @return  the cardinality of the bitmap
+     */
+    public int cardinality ()
+    {
+        int sum = 0;
+        for (int i = 0; i < n; i++) sum += card [i];
+        return sum;
+    } // cardinality
+
+    /************************************************************************************
+     * Intersect this bitmap with bitmap b.
+     *
+     * @param b  the other bitmap
+     * @return  a new bitmap holding the ints in both bitmaps
+     */
+    public RoaringBitmap and (RoaringBitmap b)
+    {
+        RoaringBitmap r = new RoaringBitmap ();
+        for (int i = 0, j = 0; i < n && j < b.n; ) {
+            if (keys [i] < b.keys [j]) i++;
+            else if (keys [i] > b.keys [j]) j++;
+            else {
+                Object c1 = cont [i], c2 = b.cont [j];
+                if (c1 instanceof long [] && c2 instanceof long []) {
+                    long [] x = (long []) c1, y = (long []) c2, z = new long [WORDS];
+                    for (int w = 0; w < WORDS; w++) z [w] = x [w] & y [w];
+                    r.appendBits (keys [i], z);
+                } else if (c1 instanceof char []) {
+                    r.appendFiltered (keys [i], (char []) c1, card [i], b, j, true);
+                } else {
+                    r.appendFiltered (keys [i], (char []) c2, b.card [j], this, i, true);
+                } // if
+                i++; j++;
+            } // if
+        } // for
+        return r;
+    } // and
+
+    /************************************************************************************
+     * Union this bitmap with bitmap b.
+     *
+     * @param b  the other bitmap
+     * @return  a new bitmap holding the ints in either bitmap
+     */
+    public RoaringBitmap or (RoaringBitmap b)
+    {
+        RoaringBitmap r = new RoaringBitmap ();
+        int i = 0, j = 0;
+        while (i < n || j < b.n) {
+            if (j == b.n || (i < n && keys [i] < b.keys [j])) {
+                r.append (keys [i], copy (cont [i], card [i]), card [i]); i++;
+            } else if (i == n || keys [i] > b.keys [j]) {
+                r.append (b.keys [j], copy (b.cont [j], b.card [j]), b.card [j]); j++;
+            } else {
+                long [] z = toBits (cont [i], card [i]);
+                Object  c = b.cont [j];
+                if (c instanceof long []) {
+                    long [] y = (long []) c;
+                    for (int w = 0; w < WORDS; w++) z [w] |= y [w];
+                } else {
+                    char [] a = (char []) c;
+                    for (int k = 0; k < b.card [j]; k++) z [a [k] >>> 6] |= 1L << a [k];
+                } // if
+                r.appendBits (keys [i], z);
+                i++; j++;
+            } // if
+        } // while
+        return r;
+    } // or
+
+    /************************************************************************************
+     * Subtract bitmap b from this bitmap.
+     *
+     * @param b  the other bitmap
+     * @return  a new bitmap holding the ints in this bitmap but not in b
+     */
+    public RoaringBitmap andNot (RoaringBitmap b)
+    {
+        RoaringBitmap r = new RoaringBitmap ();
+        for (int i = 0, j = 0; i < n; i++) {
+            while (j < b.n && b.keys [j] < keys [i]) j++;
+            if (j == b.n || b.keys [j] != keys [i]) {
+                r.append (keys [i], copy (cont [i], card [i]), card [i]);
+            } else if (cont [i] instanceof char []) {
+                r.appendFiltered (keys [i], (char []) cont [i], card [i], b, j, false);
+            } else {
+                long [] z = ((long []) cont [i]).clone ();
+                Object  c = b.cont [j];
+                if (c instanceof long []) {
+                    long [] y = (long []) c;
+                    for (int w = 0; w < WORDS; w++) z [w] &= ~ y [w];
+                } else {
+                    char [] a = (char []) c;
+                    for (int k = 0; k < b.card [j]; k++) z [a [k] >>> 6] &= ~ (1L << a [k]);
+                } // if
+                r.appendBits (keys [i], z);
+            } // if
+        } // for
+        return r;
+    } // andNot
+
+    /************************************************************************************
+     * Complement this bitmap within the universe [0, size).
+     *
+     * @param size  the size of the universe (e.g., the number of rows in a table)
+     * @return  a new bitmap holding the ints in [0, size) not in this bitmap
+     */
+    public RoaringBitmap not (int size)
+    {
+        return range (size).andNot (this);
+    } // not
+
+    /************************************************************************************
+     * Apply the given action to each int in this bitmap, in ascending order.
+     *
+     * @param action  the action to apply
+     */
+    public void forEach (IntConsumer action)
+    {
+        for (int i = 0; i < n; i++) {
+            int base = keys [i] << 16;
+            if (cont [i] instanceof char []) {
+                char [] a = (char []) cont [i];
+                for (int k = 0; k < card [i]; k++) action.accept (base | a [k]);
+            } else {
+                long [] bits = (long []) cont [i];
+                for (int w = 0; w < WORDS; w++) {
+                    for (long word = bits [w]; word != 0; word &= word - 1) {
+                        action.accept (base | (w << 6) | Long.numberOfTrailingZeros (word));
+                    } // for
+                } // for
+            } // if
+        } // for
+    } // forEach
+
+    /************************************************************************************
+     * Return the ints in this bitmap as an array, in ascending order.
+     *
+     * @return  an array of the ints in the bitmap
+     */
+    public int [] toArray ()
+    {
+        int [] a = new int [cardinality ()];
+        int [] k = { 0 };
+        forEach (x -> a [k [0]++] = x);
+        return a;
+    } // toArray
+
+    /************************************************************************************
+     * Convert this bitmap to a string.
+     *
+     * @return  the string representation of the bitmap
+     */
+    public String toString ()
+    {
+        return Arrays.toString (toArray ());
+    } // toString
+
+    //----------------------------------------------------------------------------------
+    // Private Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Find the position of the chunk with the given high bits (negative insertion point
+     * minus one if absent).
+     */
+    private int find (char hi)
+    {
+        return Arrays.binarySearch (keys, 0, n, hi);
+    } // find
+
+    /************************************************************************************
+     * Insert a chunk at position i.
+     */
+    private void insertChunk (int i, char hi, Object c, int cd)
+    {
+        if (n == keys.length) {
+            keys = Arrays.copyOf (keys, 2 * n);
+            cont = Arrays.copyOf (cont, 2 * n);
+            card = Arrays.copyOf (card, 2 * n);
+        } // if
+        System.arraycopy (keys, i, keys, i + 1, n - i);
+        System.arraycopy (cont, i, cont, i + 1, n - i);
+        System.arraycopy (card, i, card, i + 1, n - i);
+        keys [i] = hi; cont [i] = c; card [i] = cd;
+        n++;
+    } // insertChunk
+
+    /************************************************************************************
+     * Append a chunk (with a higher key than all current chunks) if it is non-empty.
+     */
+    private void append (char hi, Object c, int cd)
+    {
+        if (cd > 0) insertChunk (n, hi, c, cd);
+    } // append
+
+    /************************************************************************************
+     * Append a bitmap chunk, converting it to an array container if it is sparse.
+     */
+    private void appendBits (char hi, long [] bits)
+    {
+        int cd = 0;
+        for (long w : bits) cd += Long.bitCount (w);
+        if (cd > ARRAY_MAX) {
+            append (hi, bits, cd);
+        } else {
+            char [] a = new char [cd];
+            int k = 0;
+            for (int w = 0; w < WORDS; w++) {
+                for (long word = bits [w]; word != 0; word &= word - 1) {
+                    a [k++] = (char) ((w << 6) | Long.numberOfTrailingZeros (word));
+                } // for
+            } // for
+            append (hi, a, cd);
+        } // if
+    } // appendBits
+
+    /************************************************************************************
+     * Append the values of array container a that are (keep) or are not (! keep) in
+     * chunk j of bitmap b.
+     */
+    private void appendFiltered (char hi, char [] a, int cd, RoaringBitmap b, int j, boolean keep)
+    {
+        char [] r = new char [cd];
+        int     k = 0;
+        Object  c = b.cont [j];
+        for (int i = 0; i < cd; i++) {
+            boolean in = (c instanceof long [])
+                       ? (((long []) c) [a [i] >>> 6] & (1L << a [i])) != 0
+                       : Arrays.binarySearch ((char []) c, 0, b.card [j], a [i]) >= 0;
+            if (in == keep) r [k++] = a [i];
+        } // for
+        append (hi, r, k);
+    } // appendFiltered
+
+    /************************************************************************************
+     * Copy a container (trimming array containers to their cardinality).
+     */
+    private static Object copy (Object c, int cd)
+    {
+        return (c instanceof char []) ? Arrays.copyOf ((char []) c, cd) : ((long []) c).clone ();
+    } // copy
+
+    /************************************************************************************
+     * Return a container as a new bitmap of 1024 longs.
+     */
+    private static long [] toBits (Object c, int cd)
+    {
+        if (c instanceof long []) return ((long []) c).clone ();
+        long [] bits = new long [WORDS];
+        char [] a    = (char []) c;
+        for (int k = 0; k < cd; k++) bits [a [k] >>> 6] |= 1L << a [k];
+        return bits;
+    } // toBits
+
+} // RoaringBitmap class
@@ -0,0 +1,130 @@
+
+/****************************************************************************************
+ * @file  RunFile.java
+ */
+
+import java.io.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides temporary files of tuples that are written once, sequentially,
+ * and then read back sequentially, such as the sorted runs of an external sort.  Unlike
+ * a FileList, whose records have a fixed length so that they can be accessed by
+ * position, a run file stores tuples of any length.  The file is deleted when the run
+ * file is closed.
+ */
+public class RunFile
+       implements Iterable <Comparable []>, Closeable
+{
+    /** The number of tuples written between resets of the object stream (which would
+     *  otherwise keep a reference to every value written).
+     */
+    private static final int RESET = 512;
+
+    /** The temporary file holding the tuples.
+     */
+    private final File file;
+
+    /** The stream the tuples are written to (null once writing is finished).
+     */
+    private ObjectOutputStream oos;
+
+    /** The number of tuples in the file.
+     */
+    private int n = 0;
+
+    /************************************************************************************
+     * Create an empty run file in the default temporary directory.
+     */
+    public RunFile ()
+    {
+        try {
+            file = File.createTempFile ("run", ".tmp");
+            file.deleteOnExit ();
+            oos  = new ObjectOutputStream (new BufferedOutputStream (new FileOutputStream (file)));
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("RunFile: unable to create - " + ex, ex);
+        } // try
+    } // constructor
+
+    /************************************************************************************
+     * Append the given tuple to the run file.  All tuples must be added before the
+     * file is read.
+     *
+     * @param tup  the tuple to append
+     */
+    public void add (Comparable [] tup)
+    {
+        try {
+            oos.writeUnshared (tup);
+            if (++n % RESET == 0) oos.reset ();
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("RunFile.add: unable to write - " + ex, ex);
+        } // try
+    } // add
+
+    /************************************************************************************
+     * Return the number of tuples in the run file.
+     *
+     * @return  the number of tuples
+     */
+    public int size ()
+    {
+        return n;
+    } // size
+
+    /************************************************************************************
+     * Return an iterator reading the tuples back in the order they were added.  The
+     * first call finishes writing.
+     *
+     * @return  an iterator over the tuples
+     */
+    public Iterator <Comparable []> iterator ()
+    {
+        try {
+            if (oos != null) {
+                oos.close ();
+                oos = null;
+            } // if
+            ObjectInputStream ois = new ObjectInputStream (new BufferedInputStream (new FileInputStream (file)));
+            return new Iterator <Comparable []> () {
+                int i = 0;
+
+                public boolean hasNext ()
+                {
+                    if (i < n) return true;
+                    try { ois.close (); } catch (IOException ex) { /* all tuples were read */ }
+                    return false;
+                } // hasNext
+
+                public Comparable [] next ()
+                {
+                    if (i >= n) throw new NoSuchElementException ();
+                    try {
+                        i++;
+                        return (Comparable []) ois.readUnshared ();
+                    } catch (IOException | ClassNotFoundException ex) {
+                        throw new UncheckedIOException ("RunFile: unable to read - " + ex, new IOException (ex));
+                    } // try
+                } // next
+            };
+        } catch (IOException ex) {
+            throw new UncheckedIOException ("RunFile: unable to open - " + ex, ex);
+        } // try
+    } // iterator
+
+    /************************************************************************************
+     * Close and delete the run file.
+     */
+    public void close ()
+    {
+        try {
+            if (oos != null) oos.close ();
+        } catch (IOException ex) {
+            // the file is deleted anyway
+        } // try
+        oos = null;
+        file.delete ();
+    } // close
+
+} // RunFile class
@@ -0,0 +1,277 @@
+
+/****************************************************************************************
+ * @file  SecondaryIndex.java
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * This class implements secondary indexes on (possibly non-key) attributes of a table.
+ * Since the indexed attributes need not be unique, each entry maps an attribute value
+ * to the posting list of the row ids of all tuples carrying that value (a multi-valued
+ * index).  The underlying map may be any of the map types supported by Table.
+ *
+ * A covering index also stores the values of some included (non-indexed) attributes
+ * with each row id, so that queries touching only indexed and included attributes can
+ * be answered from the index alone (an index-only scan).
+ */
+public class SecondaryIndex
+       implements Serializable
+{
+    /** The names of the indexed attributes.
+     */
+    private final String [] attrs;
+
+    /** The column positions of the indexed attributes.
+     */
+    private final int [] cols;
+
+    /** The type of map used for the index (e.g., "TreeMap", "BpTreeMap").
+     */
+    private final String mapType;
+
+    /** Whether the index keys carry their normalized byte encoding.
+     */
+    private final boolean encoded;
+
+    /** The names of the included attributes (empty unless the index is covering).
+     */
+    private final String [] include;
+
+    /** The column positions of the included attributes.
+     */
+    private final int [] inclCols;
+
+    /** The posting list returned for values not in the index.
+     */
+    private static final PostingList NONE = new PostingList ();
+
+    /** The index itself (maps attribute value to the row ids of matching tuples).  It is
+     *  not serialized with the table but saved in its own index file (see Table.save).
+     */
+    private final transient Map <KeyType, PostingList> map;
+
+    /************************************************************************************
+     * Construct an empty secondary index on the given attributes.
+     *
+     * @param _attrs    the names of the indexed attributes
+     * @param _cols     the column positions of the indexed attributes
+     * @param _mapType  the type of map to use for the index
+     * @param _encoded  whether to use normalized (encoded) keys
+     */
+    SecondaryIndex (String [] _attrs, int [] _cols, String _mapType, boolean _encoded)
+    {
+        this (_attrs, _cols, _mapType, _encoded, new String [0], new int [0]);
+    } // constructor
+
+    /************************************************************************************
+     * Construct an empty covering index on the given attributes that also stores the
+     * values of the included attributes.
+     *
+     * @param _attrs     the names of the indexed attributes
+     * @param _cols      the column positions of the indexed attributes
+     * @param _mapType   the type of map to use for the index
+     * @param _encoded   whether to use normalized (encoded) keys
+     * @param _include   the names of the included attributes
+     * @param _inclCols  the column positions of the included attributes
+     */
+    SecondaryIndex (String [] _attrs, int [] _cols, String _mapType, boolean _encoded,
+                    String [] _include, int [] _inclCols)
+    {
+        attrs    = _attrs;
+        cols     = _cols;
+        mapType  = _mapType;
+        encoded  = _encoded;
+        include  = _include;
+        inclCols = _inclCols;
+        map      = Table.makeMap (mapType, PostingList.class);
+    } // constructor
+
+    /************************************************************************************
+     * Add the given tuple to the index, appending its row id to the posting list for
+     * its value.
+     *
+     * @param tup  the tuple to add
+     * @param rid  the row id (position in the table) of the tuple
+     */
+    void add (Comparable [] tup, int rid)
+    {
+        KeyType     keyVal = keyOf (tup);
+        PostingList rows   = map.get (keyVal);
+        if (rows == null) {
+            rows = (inclCols.length == 0) ? new PostingList () : new Covered ();
+            map.put (keyVal, rows);
+        } // if
+        addRow (rows, tup, rid);
+    } // add
+
+    /************************************************************************************
+     * Load the entry for the given value with its row ids (read from an index file),
+     * taking the values of any included attributes from the tuples.
+     *
+     * @param keyVal  the indexed value
+     * @param rids    the row ids of the tuples carrying the value
+     * @param tuples  the tuples of the table
+     */
+    void load (KeyType keyVal, int [] rids, List <Comparable []> tuples)
+    {
+        PostingList rows = (inclCols.length == 0) ? new PostingList () : new Covered ();
+        for (int rid : rids) addRow (rows, (inclCols.length == 0) ? null : tuples.get (rid), rid);
+        map.put (keyVal, rows);
+    } // load
+
+    /************************************************************************************
+     * Append the row id (with the values of the included attributes of the tuple for a
+     * covering index) to the posting list.
+     */
+    private void addRow (PostingList rows, Comparable [] tup, int rid)
+    {
+        if (inclCols.length == 0) {
+            rows.add (rid);
+        } else {
+            Comparable [] vals = new Comparable [inclCols.length];
+            for (int j = 0; j < inclCols.length; j++) vals [j] = tup [inclCols [j]];
+            ((Covered) rows).add (rid, vals);
+        } // if
+    } // addRow
+
+    /************************************************************************************
+     * Return the entries of the index (for saving it).
+     *
+     * @return  the map from indexed value to posting list
+     */
+    Map <KeyType, PostingList> entries ()
+    {
+        return map;
+    } // entries
+
+    /************************************************************************************
+     * Return the row ids of the tuples whose indexed attributes equal the given value.
+     * The returned posting list must not be modified.
+     *
+     * @param keyVal  the value to look up
+     * @return  the posting list of matching row ids (empty if there are none)
+     */
+    PostingList get (KeyType keyVal)
+    {
+        PostingList rows = map.get (keyVal);
+        return (rows == null) ? NONE : rows;
+    } // get
+
+    /************************************************************************************
+     * Return the values of the included attributes stored with the i-th row id of the
+     * given posting list (obtained from this covering index).
+     *
+     * @param rows  the posting list returned by get
+     * @param i     the position in the posting list
+     * @return  the values of the included attributes
+     */
+    Comparable [] included (PostingList rows, int i)
+    {
+        return ((Covered) rows).vals [i];
+    } // included
+
+    /************************************************************************************
+     * Determine whether this index covers the given attributes, i.e., whether each is
+     * an indexed or an included attribute.
+     *
+     * @param proj  the attributes to check
+     * @return  whether their values are all available in the index
+     */
+    boolean covers (String [] proj)
+    {
+        List <String> have = new ArrayList <> (Arrays.asList (attrs));
+        have.addAll (Arrays.asList (include));
+        return have.containsAll (Arrays.asList (proj));
+    } // covers
+
+    /************************************************************************************
+     * Form the index key for the given tuple by extracting the indexed attributes.
+     *
+     * @param tup  the tuple to form the key for
+     * @return  the key of the tuple in this index
+     */
+    KeyType keyOf (Comparable [] tup)
+    {
+        Comparable [] keyVal = new Comparable [cols.length];
+        for (int j = 0; j < cols.length; j++) keyVal [j] = tup [cols [j]];
+        return key (keyVal);
+    } // keyOf
+
+    /************************************************************************************
+     * Form the index key for the given values of the indexed attributes.
+     *
+     * @param vals  the values of the indexed attributes
+     * @return  the key for the values in this index
+     */
+    KeyType key (Comparable [] vals)
+    {
+        return encoded ? KeyType.encoded (vals) : KeyType.of (vals);
+    } // key
+
+    /************************************************************************************
+     * Return the names of the indexed attributes.
+     *
+     * @return  the indexed attributes
+     */
+    String [] getAttrs ()
+    {
+        return attrs;
+    } // getAttrs
+
+    /************************************************************************************
+     * Return the type of map used for this index.
+     *
+     * @return  the map type
+     */
+    String getMapType ()
+    {
+        return mapType;
+    } // getMapType
+
+    /************************************************************************************
+     * Return an empty index with the same definition (attributes, map type, encoding
+     * and included attributes) as this one.
+     *
+     * @return  an empty copy of this index
+     */
+    SecondaryIndex emptyCopy ()
+    {
+        return new SecondaryIndex (attrs, cols, mapType, encoded, include, inclCols);
+    } // emptyCopy
+
+    /************************************************************************************
+     * Return the names of the included attributes.
+     *
+     * @return  the included attributes (empty unless the index is covering)
+     */
+    String [] getInclude ()
+    {
+        return include;
+    } // getInclude
+
+    /************************************************************************************
+     * The posting list of a covering index, which keeps the values of the included
+     * attributes alongside each row id.
+     */
+    private static class Covered
+            extends PostingList
+    {
+        /** The values of the included attributes, parallel to the row ids.
+         */
+        private Comparable [][] vals = new Comparable [2][];
+
+        /** Add the given row id with the values of its included attributes.
+         */
+        void add (int r, Comparable [] v)
+        {
+            int n = size ();
+            if (n == vals.length) vals = Arrays.copyOf (vals, 2 * n);
+            vals [n] = v;
+            add (r);
+        } // add
+
+    } // Covered class
+
+} // SecondaryIndex class
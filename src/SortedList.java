@@ -0,0 +1,106 @@
+
+/****************************************************************************************
+ * @file  SortedList.java
+ */
+
+import java.io.Serializable;
+import java.util.*;
+
+/****************************************************************************************
+ * This class holds the tuples of a table produced by Table.orderBy.  The tuples are
+ * only sorted (by ExternalSort, within Table.memoryTuples) when they are first
+ * accessed, so that a following Table.limit can take the first k tuples with a Top-N
+ * heap instead of sorting all of them.
+ */
+class SortedList
+      extends AbstractList <Comparable []>
+      implements RandomAccess, Serializable
+{
+    /** The tuples to sort (null once sorted).
+     */
+    private List <Comparable []> source;
+
+    /** The sorted tuples (null until first accessed).
+     */
+    private List <Comparable []> sorted;
+
+    /** The columns to sort on, and whether the order is ascending.
+     */
+    private final int []  cols;
+    private final boolean isAsc;
+
+    /************************************************************************************
+     * Construct a list of the given tuples sorted on the given columns.
+     *
+     * @param _source  the tuples to sort
+     * @param _cols    the columns to sort on
+     * @param _isAsc   whether to sort in ascending (rather than descending) order
+     */
+    SortedList (List <Comparable []> _source, int [] _cols, boolean _isAsc)
+    {
+        source = _source;
+        cols   = _cols;
+        isAsc  = _isAsc;
+    } // constructor
+
+    /************************************************************************************
+     * Return the first k tuples in sorted order, found with a Top-N heap unless the
+     * tuples are sorted already.
+     *
+     * @param k  the number of tuples to return
+     * @return  the first k tuples (all if there are fewer)
+     */
+    List <Comparable []> top (int k)
+    {
+        if (sorted != null) return new ArrayList <> (sorted.subList (0, Math.min (k, sorted.size ())));
+        return ExternalSort.top (source, order (), k);
+    } // top
+
+    public int size ()
+    {
+        return (sorted != null) ? sorted.size () : source.size ();
+    } // size
+
+    public Comparable [] get (int i)
+    {
+        return rows ().get (i);
+    } // get
+
+    public Comparable [] set (int i, Comparable [] tup)
+    {
+        return rows ().set (i, tup);
+    } // set
+
+    public void add (int i, Comparable [] tup)
+    {
+        rows ().add (i, tup);
+    } // add
+
+    public Comparable [] remove (int i)
+    {
+        return rows ().remove (i);
+    } // remove
+
+    /************************************************************************************
+     * Return the sorted tuples, sorting them on first use.
+     */
+    private List <Comparable []> rows ()
+    {
+        if (sorted == null) {
+            sorted = new ArrayList <> (source.size ());
+            ExternalSort.sort (source, order (), Table.memoryTuples).forEachRemaining (sorted::add);
+            source = null;
+        } // if
+        return sorted;
+    } // rows
+
+    /************************************************************************************
+     * Return the order to sort the tuples into.
+     */
+    private Comparator <Comparable []> order ()
+    {
+        return isAsc ? (a, b) -> Table.compareCols (a, cols, b, cols)
+                     : (a, b) -> Table.compareCols (b, cols, a, cols);
+    } // order
+
+} // SortedList class
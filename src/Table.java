@@ -7,7 +7,11 @@
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.*;
 import java.util.stream.*;
 
@@ -31,6 +35,31 @@ public class Table
      */
     private static final String EXT = ".dbf";
 
+    /** The file extension for index files.
+     */
+    private static final String IDX = ".idx";
+
+    /** The cost of fetching a tuple through an index relative to reading it in a scan.
+     */
+    private static final double RANDOM_COST = 4.0;
+
+    /** The selectivity assumed for a range on a non-numeric attribute.
+     */
+    private static final double DEFAULT_SEL = 1.0 / 3.0;
+
+    /** The set operations (see setOp).
+     */
+    private static final int UNION = 0, MINUS = 1, INTERSECT = 2;
+
+    /** The number of probes an index nested-loop join sorts and looks up together.
+     */
+    private static final int BATCH = 1024;
+
+    /** The number of tuples an operator (e.g., a sort or the build side of a hash join)
+     *  may hold in memory before it spills to run files.
+     */
+    static int memoryTuples = 1 << 17;
+
     /** Counter for naming temporary tables.
      */
     private static int count = 0;
@@ -58,12 +87,60 @@ public class Table
      */
     private final String [] key;
 
-    /** Index into tuples (maps key to tuple number).
+    /** Index into tuples (maps key to tuple number).  It is not serialized with the table
+     *  but saved in its own index file (see save).
+     */
+    private transient Map <KeyType, Comparable []> index;
+
+    /** Whether the primary index holds the tuples.  A table built from a list of tuples
+     *  (the result of an operator) starts with an empty index that is never filled, so
+     *  its lookups must scan (see usePrimary).
      */
-    private final Map <KeyType, Comparable []> index;
+    private boolean indexed = true;
 
     private String index_type = "";
 
+    /** Whether index keys carry their normalized byte encoding (see KeyEncoder).
+     */
+    private boolean encodeKeys = false;
+
+    /** Secondary indexes on (non-key) attributes, keyed by the indexed attribute names.
+     */
+    private final Map <String, SecondaryIndex> secIndex = new LinkedHashMap <> ();
+
+    /** Bitmap indexes on low-cardinality attributes, keyed by the indexed attribute name.
+     */
+    private final Map <String, BitmapIndex> bitmapIndex = new LinkedHashMap <> ();
+
+    /** Bloom filters on attributes (or the primary key), keyed by the attribute names.
+     */
+    private final Map <String, BloomFilter> bloom = new LinkedHashMap <> ();
+
+    /** Zone maps (per-block min/max and null count of every column), built on first use.
+     */
+    private ZoneMap zones;
+
+    /** The workload statistics of an "Adaptive" primary index (null for a fixed map type).
+     */
+    private IndexAdvisor advisor;
+
+    /** Whether index maintenance is deferred during a bulk load (see beginBulkLoad).
+     */
+    private boolean deferIndex = false;
+
+    /** The version of the saved table data (a fresh stamp at every save), also recorded
+     *  in the index files so that stale ones are detected on load.
+     */
+    private long dataVersion = 0;
+
+    /** The access path taken by the last selection (e.g., "index BpTreeMap", "scan").
+     */
+    private String accessPath = "";
+
+    /** Whether the tuples are stored in primary key order (null if not yet known).
+     */
+    private Boolean clustered;
+
     //----------------------------------------------------------------------------------
     // Constructors
     //----------------------------------------------------------------------------------
@@ -84,25 +161,8 @@ public class Table
         key       = _key;
         tuples    = new ArrayList <> ();
         index_type = mapToBeUsed;
-        if( mapToBeUsed.equals( "LinHashMap" ) ) {
-            index = new LinHashMap <> (KeyType.class, Comparable[].class, 16);
-            //System.out.println(mapToBeUsed);
-        }
-        else if( mapToBeUsed.equals( "BpTreeMap") ) {
-            index = new BpTreeMap <> (KeyType.class, Comparable[].class);
-             //System.out.println(mapToBeUsed);
-        }
-        else if( mapToBeUsed.equals( "ExtHashMap") ) {
-            index = new ExtHashMap <> (KeyType.class, Comparable[].class, 16);
-             //System.out.println(mapToBeUsed);
-        }
-        else if( mapToBeUsed.equals( "TreeMap") ) {
-            index = new TreeMap <> ();
-             //System.out.println(mapToBeUsed);
-        }
-        else {
-            index = new TreeMap <> ();
-        }     // also try BPTreeMap, LinHashMap or ExtHashMap
+        index     = makeMap (mapToBeUsed, Comparable [].class);
+        if (mapToBeUsed.equals ("Adaptive")) advisor = new IndexAdvisor ();
     } // constructor
 
     /************************************************************************************
@@ -122,23 +182,10 @@ public class Table
         domain    = _domain;
         key       = _key;
         tuples    = _tuples;
-        index_type = "TreeMap";
-        //out.print(mapToBeUsed);
-        if( mapToBeUsed.equals( "LinHashMap" ) ) {
-            index = new LinHashMap(KeyType.class, Comparable[].class, 16);
-        }
-        else if( mapToBeUsed.equals( "BpTreeMap") ) {
-            index = new BpTreeMap(KeyType.class, Comparable[].class);
-        }
-        else if( mapToBeUsed.equals( "ExtHashMap") ) {
-            index = new ExtHashMap(KeyType.class, Comparable[].class, 16);
-        }
-        else if( mapToBeUsed.equals( "TreeMap") ) {
-            index = new TreeMap <> ();
-        }
-        else {
-            index = new TreeMap <> ();
-        }    // also try BPTreeMap, LinHashMap or ExtHashMap
+        index_type = mapToBeUsed;
+        index     = makeMap (mapToBeUsed, Comparable [].class);
+        indexed   = false;
+        if (mapToBeUsed.equals ("Adaptive")) advisor = new IndexAdvisor ();
     } // constructor
 
     /************************************************************************************
@@ -166,7 +213,8 @@ public class Table
 
     /************************************************************************************
      * Project the tuples onto a lower dimension by keeping only the given attributes.
-     * Check whether the original key is included in the projection.
+     * Check whether the original key is included in the projection.  Duplicate tuples
+     * are eliminated (DISTINCT).
      *
      * #usage movie.project ("title year studioNo")
      *
@@ -175,25 +223,170 @@ public class Table
      */
     public Table project (String attributes)
     {
-        out.println ("RA> " + name + ".project (" + attributes + ")");
+        return project (attributes, false);
+    } // project
+
+    /************************************************************************************
+     * Project the tuples onto a lower dimension by keeping only the given attributes,
+     * with set semantics (DISTINCT) or bag semantics (one projected tuple per tuple).
+     * The column positions are resolved once; duplicates are detected in a TupleSet
+     * from the source tuple itself, so only distinct projected tuples are allocated.
+     *
+     * #usage movie.project ("year", true)
+     *
+     * @param attributes  the attributes to project onto
+     * @param isBag       whether to keep duplicates
+     * @return  a table of projected tuples
+     */
+    public Table project (String attributes, boolean isBag)
+    {
+        out.println ("RA> " + name + ".project (" + attributes + (isBag ? ", bag" : "") + ")");
         String [] attrs     = attributes.split (" ");
-        Class []  colDomain = extractDom (match (attrs), domain);
+        int []    cols      = match (attrs);
+        Class []  colDomain = extractDom (cols, domain);
         String [] newKey    = (Arrays.asList (attrs).containsAll (Arrays.asList (key))) ? key : attrs;
 
-        List <Comparable []> rows = new ArrayList <> ();
+        List <Comparable []> rows = new ArrayList <> (tuples.size ());
+        if (isBag) {
+            for (Comparable [] tup : tuples) rows.add (extract (tup, cols));
+        } else {
+            TupleSet seen = new TupleSet (Math.min (tuples.size (), 1 << 16));
+            for (Comparable [] tup : tuples) {
+                Comparable [] proj = seen.add (tup, cols);
+                if (proj != null) rows.add (proj);
+            } // for
+        } // if
 
-        for(int i = 0; i < tuples.size(); i++){
-            Comparable curr [] = new Comparable[attrs.length];
-            for(int j = 0; j < attrs.length; j++){
-                curr[j] = tuples[i][col(attrs[j])];
-                // rows.add(i, new Comparable[] { tuples[i][col(attrs[j])]});
-            }
-            rows.add(curr);
-        }
-        
         return new Table (name + count++, attrs, colDomain, newKey, rows, index_type);
     } // project
 
+    /************************************************************************************
+     * Group the tuples by the given attributes, for aggregation.
+     *
+     * #usage transcript.groupBy ("crsCode").aggregate ("count(*) max(grade)")
+     *
+     * @param attributes  the attributes to group by (none for a single group)
+     * @return  the grouping, whose aggregate method computes the aggregates
+     */
+    public GroupBy groupBy (String attributes)
+    {
+        return new GroupBy (this, attributes);
+    } // groupBy
+
+    /************************************************************************************
+     * Group the tuples by the given attributes and compute the given aggregates, each
+     * written as function(attribute) with function count, sum, min, max or avg (and
+     * count(*) counting the tuples).  The result has a tuple per group, holding the
+     * group attributes followed by the aggregates, which are named as written.  Counts
+     * are Longs, sums of integer attributes Longs and other sums and averages Doubles.
+     * Without group attributes the result has exactly one tuple, even for an empty table
+     * (where the counts are 0 and the other aggregates null).
+     * The aggregation is done by HashAggregate, in parallel for large tables and
+     * spilling to run files when there are more than memoryTuples groups.
+     *
+     * #usage transcript.aggregate ("studId", "count(*) min(grade)")
+     *
+     * @param attributes  the attributes to group by (none for a single group)
+     * @param aggregates  the aggregates to compute
+     * @return  a table of the aggregates per group
+     */
+    public Table aggregate (String attributes, String aggregates)
+    {
+        out.println ("RA> " + name + ".groupBy (" + attributes + ").aggregate (" + aggregates + ")");
+
+        String [] group  = attributes.trim ().isEmpty () ? new String [0] : attributes.split (" ");
+        String [] aggs   = aggregates.split (" ");
+        int []    fns    = new int [aggs.length];
+        int []    aCols  = new int [aggs.length];
+        boolean[] isLong = new boolean [aggs.length];
+        Class []  newDom = Arrays.copyOf (extractDom (match (group), domain), group.length + aggs.length);
+
+        for (int a = 0; a < aggs.length; a++) {
+            String agg = aggs [a];
+            int    l   = agg.indexOf ('(');
+            String arg = (l < 0 || ! agg.endsWith (")")) ? "" : agg.substring (l + 1, agg.length () - 1);
+            fns [a]    = (l < 0) ? -1 : HashAggregate.FUNCTIONS.indexOf (agg.substring (0, l));
+            aCols [a]  = arg.equals ("*") ? -1 : col (arg);
+            if (fns [a] < 0 || aCols [a] < 0 && ! (arg.equals ("*") && fns [a] == HashAggregate.COUNT)) {
+                out.println ("aggregate ERROR: unknown aggregate " + agg);
+                return null;
+            } // if
+
+            Class d   = (aCols [a] < 0) ? null : domain [aCols [a]];
+            isLong [a] = d == Integer.class || d == Long.class || d == Short.class || d == Byte.class;
+            switch (fns [a]) {
+            case HashAggregate.COUNT: newDom [group.length + a] = Long.class;   break;
+            case HashAggregate.AVG:   newDom [group.length + a] = Double.class; break;
+            case HashAggregate.SUM:   newDom [group.length + a] = isLong [a] ? Long.class : Double.class; break;
+            default:                  newDom [group.length + a] = d;
+            } // switch
+            if ((fns [a] == HashAggregate.SUM || fns [a] == HashAggregate.AVG) && ! Number.class.isAssignableFrom (d)) {
+                out.println ("aggregate ERROR: " + agg + " needs a numeric attribute");
+                return null;
+            } // if
+        } // for
+
+        List <Comparable []> rows   = HashAggregate.aggregate (tuples, match (group), fns, aCols, isLong, memoryTuples);
+        if (group.length == 0 && rows.isEmpty ()) {             // one (empty) group: counts 0, others null
+            Comparable [] row = new Comparable [aggs.length];
+            for (int a = 0; a < aggs.length; a++) if (fns [a] == HashAggregate.COUNT) row [a] = 0L;
+            rows.add (row);
+        } // if
+        String []            newAtt = ArrayUtil.concat (group, aggs);
+        return new Table (name + count++, newAtt, newDom, (group.length > 0) ? group : newAtt, rows, index_type);
+    } // aggregate
+
+    /************************************************************************************
+     * Order the tuples by the given attributes in ascending order (ORDER BY).
+     *
+     * #usage movie.orderBy ("year title")
+     *
+     * @param attributes  the attributes to order by
+     * @return  a table with the tuples in order
+     */
+    public Table orderBy (String attributes)
+    {
+        return orderBy (attributes, true);
+    } // orderBy
+
+    /************************************************************************************
+     * Order the tuples by the given attributes in ascending or descending order (ORDER
+     * BY).  The sort is stable and deferred until the tuples are first accessed, when
+     * they are sorted by an external merge sort holding at most memoryTuples tuples in
+     * memory; a following limit (k) only keeps the first k tuples in a heap (Top-N).
+     *
+     * #usage movie.orderBy ("year", false).limit (10)
+     *
+     * @param attributes  the attributes to order by
+     * @param isAsc       whether the order is ascending (rather than descending)
+     * @return  a table with the tuples in order
+     */
+    public Table orderBy (String attributes, boolean isAsc)
+    {
+        out.println ("RA> " + name + ".orderBy (" + attributes + ", " + (isAsc ? "asc" : "desc") + ")");
+
+        List <Comparable []> rows = new SortedList (new ArrayList <> (tuples), match (attributes.split (" ")), isAsc);
+        return new Table (name + count++, attribute, domain, key, rows, index_type);
+    } // orderBy
+
+    /************************************************************************************
+     * Keep only the first k tuples (LIMIT).  On a table produced by orderBy, these are
+     * the k first tuples in order, found without sorting the others.
+     *
+     * #usage movie.orderBy ("length", false).limit (5)
+     *
+     * @param k  the number of tuples to keep
+     * @return  a table with (at most) the first k tuples
+     */
+    public Table limit (int k)
+    {
+        out.println ("RA> " + name + ".limit (" + k + ")");
+
+        List <Comparable []> rows = (tuples instanceof SortedList) ? ((SortedList) tuples).top (k)
+                                  : new ArrayList <> (tuples.subList (0, Math.min (k, tuples.size ())));
+        return new Table (name + count++, attribute, domain, key, rows, index_type);
+    } // limit
+
     /************************************************************************************
      * Select the tuples satisfying the given predicate (Boolean function).
      *
@@ -211,9 +404,61 @@ public class Table
                         .collect (Collectors.toList ()), index_type);
     } // select
 
+    /************************************************************************************
+     * Select the tuples satisfying the given predicate expression.  Its conjuncts are
+     * analyzed to pick the access path: an equality or IN list on an attribute with a
+     * secondary index (or forming the primary key) is looked up; otherwise those on
+     * bitmap-indexed attributes are answered by intersecting the bitmaps; otherwise a
+     * range on an ordered index (or the clustered primary key) is answered like
+     * rangeSelect; otherwise the scan skips every block whose zone maps rule out one of
+     * the equalities, IN lists or ranges.  The candidate tuples are then tested with the
+     * compiled predicate, whose attribute positions are resolved once.
+     *
+     * #usage movie.select (Pred.and (Pred.eq ("studioName", "Fox"), Pred.range ("year", 1970, true, 1980, false)))
+     *
+     * @param pred  the predicate expression
+     * @return  a table with the tuples satisfying the predicate
+     */
+    public Table select (Pred pred)
+    {
+        out.println ("RA> " + name + ".select (" + pred + ")");
+
+        Predicate <Comparable []> test  = pred.compile (this);
+        List <Pred>               conj  = pred.conjuncts ();
+        List <Comparable []>      cands = indexRows (conj);
+        List <Comparable []>      rows  = new ArrayList <> ();
+
+        if (cands != null) {
+            for (Comparable [] tup : cands) if (test.test (tup)) rows.add (tup);
+        } else {
+            ZoneMap    zm    = zoneMap ();
+            boolean [] live  = new boolean [zm.blocks ()];
+            int        nLive = 0;
+            for (int b = 0; b < live.length; b++) {
+                if (live [b] = mayMatch (zm, b, conj)) nLive++;
+            } // for
+            accessPath = (nLive < live.length) ? "scan (zone maps)" : "scan";
+            for (int b = 0; b < live.length; b++) {
+                if (! live [b]) continue;
+                int end = Math.min ((b + 1) * ZoneMap.BLOCK, tuples.size ());
+                for (int i = b * ZoneMap.BLOCK; i < end; i++) {
+                    Comparable [] tup = tuples.get (i);
+                    if (test.test (tup)) rows.add (tup);
+                } // for
+            } // for
+        } // if
+
+        return new Table (name + count++, attribute, domain, key, rows, index_type);
+    } // select
+
     /************************************************************************************
      * Select the tuples satisfying the given key predicate (key = value).  Use an index
-     * (Map) to retrieve the tuple with the given key value.
+     * (Map) to retrieve the tuple with the given key value.  The table is only scanned
+     * when the index cannot be used: while index maintenance is deferred by a bulk load,
+     * or when the value does not give every attribute of the primary key (then its
+     * values are matched against the leading key attributes).  A Bloom filter on the
+     * primary key can only rule out a full key.  The access path taken is available
+     * from getAccessPath.
      *
      * @param keyVal  the given key value
      * @return  a table with the tuple satisfying the key predicate
@@ -224,21 +469,141 @@ public class Table
 
         List <Comparable []> rows = new ArrayList <> ();
 
-//        rows.add( index.get(keyVal) );
+        BloomFilter bf = deferIndex ? null : bloom.get (String.join (" ", key));   // key definitely absent
+        if (bf != null && keyVal.size () == key.length && ! bf.mightContain (keyVal)) {
+            accessPath = "bloom filter";
+            return new Table (name + count++, attribute, domain, key, rows, index_type);
+        } // if
 
-        // Table Scan - ArrayList
-        for (int i = 0; i < tuples.size(); i++) {
-            if ((new KeyType(tuples[i][0])).equals(keyVal)) {
-                rows.add(tuples[i]);
-            }
-        }
+        if (usePrimary () && keyVal.size () == key.length) {
+            adapt (IndexAdvisor.POINT, 1);
+            accessPath = "index " + index.getClass ().getSimpleName ();
+            Comparable [] tup = index.get (keyOf (keyVal.values ()));
+            if (tup != null) rows.add (tup);
+        } else {
+            accessPath = "scan";
+            int [] cols = Arrays.copyOf (match (key), Math.min (keyVal.size (), key.length));
+            for (Comparable [] tup : tuples) {
+                if (KeyType.of (extract (tup, cols)).equals (keyVal)) rows.add (tup);
+            } // for
+        } // if
 
         return new Table (name + count++, attribute, domain, key, rows, index_type);
     } // select
 
+    /************************************************************************************
+     * Select the tuples whose given attributes equal the given value.  Use a secondary
+     * index on the attributes if one exists, the primary index if the attributes form
+     * the primary key, the intersection of the bitmap indexes on any of the attributes,
+     * and a table scan otherwise (or while a bulk load defers index maintenance).
+     *
+     * #usage professor.select ("name", new KeyType ("name890218"))
+     *
+     * @param attributes  the attributes to compare
+     * @param keyVal      the given value of the attributes
+     * @return  a table with the tuples satisfying the equality predicate
+     */
+    public Table select (String attributes, KeyType keyVal)
+    {
+        out.println ("RA> " + name + ".select (" + attributes + ", " + keyVal + ")");
+
+        String []            attrs = attributes.split (" ");
+        SecondaryIndex       si    = secIndex.get (attributes);
+        BloomFilter          bf    = bloom.get (attributes);
+        List <Comparable []> rows  = new ArrayList <> ();
+
+        if (deferIndex) {
+            accessPath = "scan";                                // indexes are stale during a bulk load
+            for (Comparable [] tup : tuples) {
+                if (KeyType.of (extract (tup, attrs)).equals (keyVal)) rows.add (tup);
+            } // for
+        } else if (bf != null && ! bf.mightContain (keyVal)) {
+            accessPath = "bloom filter";                        // value definitely absent, no lookup needed
+        } else if (si != null) {
+            accessPath = "secondary index";
+            PostingList rids = si.get (si.key (keyVal.values ()));
+            for (int i = 0; i < rids.size (); i++) rows.add (tuples.get (rids.get (i)));
+        } else if (usePrimary () && Arrays.equals (attrs, key)) {
+            adapt (IndexAdvisor.POINT, 1);
+            accessPath = "index " + index.getClass ().getSimpleName ();
+            Comparable [] tup = index.get (keyOf (keyVal.values ()));
+            if (tup != null) rows.add (tup);
+        } else if (hasBitmap (attrs)) {
+            accessPath = "bitmap";
+            RoaringBitmap rids = null;                          // intersect the bitmaps
+            for (int j = 0; j < attrs.length; j++) {
+                BitmapIndex bi = bitmapIndex.get (attrs [j]);
+                if (bi != null) rids = (rids == null) ? bi.get (keyVal.get (j)) : rids.and (bi.get (keyVal.get (j)));
+            } // for
+            int [] cols = match (attrs);
+            rids.forEach (i -> {
+                Comparable [] tup = tuples.get (i);
+                for (int j = 0; j < cols.length; j++) {
+                    if (! tup [cols [j]].equals (keyVal.get (j))) return;
+                } // for
+                rows.add (tup);
+            });
+        } else {
+            accessPath = "scan";
+            for (Comparable [] tup : tuples) {
+                if (KeyType.of (extract (tup, attrs)).equals (keyVal)) rows.add (tup);
+            } // for
+        } // if
+
+        return new Table (name + count++, attribute, domain, key, rows, index_type);
+    } // select
+
+    /************************************************************************************
+     * Select the tuples whose given attributes equal the given value and project them
+     * onto the projected attributes.  If a covering index on the attributes includes all
+     * the projected attributes, the result is built from the index entries alone (an
+     * index-only scan), without touching the tuples; otherwise select is followed by
+     * project.
+     *
+     * #usage student.selectProject ("id", KeyType.of (12345), "name")
+     *
+     * @param attributes      the attributes to compare
+     * @param keyVal          the given value of the attributes
+     * @param projAttributes  the attributes to project onto
+     * @return  a table with the projected tuples satisfying the equality predicate
+     */
+    public Table selectProject (String attributes, KeyType keyVal, String projAttributes)
+    {
+        SecondaryIndex si   = secIndex.get (attributes);
+        String []      proj = projAttributes.split (" ");
+        if (deferIndex || si == null || ! si.covers (proj)) return select (attributes, keyVal).project (projAttributes);
+
+        out.println ("RA> " + name + ".selectProject (" + attributes + ", " + keyVal + ", "
+                     + projAttributes + ") using a covering index");
+
+        List <String> attrs = Arrays.asList (si.getAttrs ());
+        List <String> incl  = Arrays.asList (si.getInclude ());
+        int []        src   = new int [proj.length];            // key position, or -1 - included position
+        for (int j = 0; j < proj.length; j++) {
+            int p = attrs.indexOf (proj [j]);
+            src [j] = (p >= 0) ? p : -1 - incl.indexOf (proj [j]);
+        } // for
+
+        List <Comparable []> rows = new ArrayList <> ();
+        PostingList          rids = si.get (si.key (keyVal.values ()));
+        TupleSet             seen = new TupleSet (rids.size ());  // project eliminates duplicates
+        int []               all  = IntStream.range (0, proj.length).toArray ();
+        for (int i = 0; i < rids.size (); i++) {
+            Comparable [] inc = si.included (rids, i);
+            Comparable [] row = new Comparable [proj.length];
+            for (int j = 0; j < proj.length; j++) row [j] = (src [j] >= 0) ? keyVal.get (src [j]) : inc [-1 - src [j]];
+            Comparable [] distinct = seen.add (row, all);
+            if (distinct != null) rows.add (distinct);
+        } // for
+
+        String [] newKey = (Arrays.asList (proj).containsAll (Arrays.asList (key))) ? key : proj;
+        return new Table (name + count++, proj, extractDom (match (proj), domain), newKey, rows, index_type);
+    } // selectProject
+
     /**
-     * Select the tuples satisfying the given range. Use an index to retrieve
-     * the tuples.
+     * Select the tuples whose primary key lies in the given range (a null bound means
+     * unbounded).  The access path (clustered table, ordered index or zone-map pruned
+     * scan) is chosen by the estimated selectivity of the range (see rangeRows).
      *
      * @param fromKey   beginning of the range
      * @param isInclFrom    whether the from boundary is inclusive
@@ -251,43 +616,107 @@ public class Table
         
         out.println ("RA> " + name + ".select (" + fromKey + ", " + isInclFrom + ", " +
                 toKey + ", " + isInclTo + ")");
+        adapt (IndexAdvisor.RANGE, 1);
 
-        List <Comparable []> rows = new ArrayList <> ();
-        if (index.getClass().getSimpleName().equals("BpTreeMap")) {
-//            rows.addAll(((BpTreeMap) index).subMap(fromKey, isInclFrom, toKey, isInclTo).values());
-        } else if (index.getClass().getSimpleName().equals("TreeMap")) {
-            rows.addAll(((TreeMap) index).subMap(fromKey, isInclFrom, toKey, isInclTo).values());
-        } 
-        /*else if (index.getClass().getSimpleName().equals("LinHashMap")) {
-            Set<Map.Entry<KeyType, Comparable[]>> retSet = this.index.entrySet();
-
-            for( Entry<KeyType, Comparable[]> entry : retSet ) {
-                KeyType key = entry.getKey();
-                if( key.compareTo(fromKey) >= 0 || key.compareTo(toKey) <= 0 )
-                    rows.add( entry.getValue() );
-            }
+        return new Table (name + count++, attribute, domain, key,
+                          rangeRows (key, fromKey, isInclFrom, toKey, isInclTo), index_type);
+    }
 
+    /************************************************************************************
+     * Select the tuples whose given attribute lies in the range between lo and hi (a
+     * null bound means unbounded).  An ordered index on the attribute is used for a
+     * selective range; otherwise the scan skips every block of tuples whose zone map
+     * shows that no value of the attribute can lie in the range.
+     *
+     * #usage student.rangeSelect ("id", 1000, true, 2000, false)
+     *
+     * @param attr      the attribute to compare
+     * @param lo        the lower bound of the range (or null)
+     * @param isInclLo  whether the lower bound is inclusive
+     * @param hi        the upper bound of the range (or null)
+     * @param isInclHi  whether the upper bound is inclusive
+     * @return  a table with the tuples whose attribute value is in the range
+     */
+    public Table rangeSelect (String attr, Comparable lo, boolean isInclLo, Comparable hi, boolean isInclHi)
+    {
+        out.println ("RA> " + name + ".rangeSelect (" + attr + ", " + lo + ", " + isInclLo + ", "
+                                                    + hi + ", " + isInclHi + ")");
 
-        }
-        */ else {
-            out.print("Range select is not valid for this " +
-                    index.getClass().getSimpleName() + " class, ");
-            out.println("resulting in an empty table.");
-        }
+        return new Table (name + count++, attribute, domain, key,
+                          rangeRows (new String [] { attr }, bound (lo), isInclLo, bound (hi), isInclHi),
+                          index_type);
+    } // rangeSelect
 
-        // Table Scan - ArrayList
-        for (int i = 0; i < tuples.size(); i++) {
-            KeyType key_i = new KeyType(tuples[i][0]);
-            if (fromKey <= key_i && key_i <= toKey) {
-                rows.add(tuples[i]);
-            }
-        }
+    /************************************************************************************
+     * Select the tuples whose given attribute compares to the given value as specified
+     * by the operator ("==", "!=", "<", "<=", ">", ">=").  Except for "!=", the predicate
+     * is a range, answered like rangeSelect.
+     *
+     * #usage movie.select ("year", "<", 1980)
+     *
+     * @param attr   the attribute to compare
+     * @param op     the comparison operator
+     * @param value  the value to compare with
+     * @return  a table with the tuples satisfying the comparison
+     */
+    public Table select (String attr, String op, Comparable value)
+    {
+        out.println ("RA> " + name + ".select (" + attr + " " + op + " " + value + ")");
+
+        int                  c    = col (attr);
+        String []            a    = { attr };
+        KeyType              v    = bound (value);
+        List <Comparable []> rows;
+        switch (op) {
+        case "==": rows = rangeRows (a, v, true, v, true);        break;
+        case "<":  rows = rangeRows (a, null, false, v, false);   break;
+        case "<=": rows = rangeRows (a, null, false, v, true);    break;
+        case ">":  rows = rangeRows (a, v, false, null, false);   break;
+        case ">=": rows = rangeRows (a, v, true, null, false);    break;
+        case "!=":
+            rows = new ArrayList <> ();
+            for (Comparable [] tup : tuples) {
+                if (tup [c] != null && ! tup [c].equals (value)) rows.add (tup);
+            } // for
+            break;
+        default:
+            out.println ("select: unknown comparison operator " + op);
+            return null;
+        } // switch
 
         return new Table (name + count++, attribute, domain, key, rows, index_type);
-    }
+    } // select
+
+    /************************************************************************************
+     * Select the tuples whose (single, String) primary key starts with the given prefix.
+     * An ArtMap index answers this by descending along the prefix; other indexes fall
+     * back to a table scan.
+     *
+     * #usage course.prefixSelect ("crsCode78")
+     *
+     * @param prefix  the prefix of the key values
+     * @return  a table with the tuples whose key starts with the prefix
+     */
+    public Table prefixSelect (String prefix)
+    {
+        out.println ("RA> " + name + ".prefixSelect (" + prefix + ")");
+
+        List <Comparable []> rows = new ArrayList <> ();
+        if (index instanceof ArtMap) {
+            rows.addAll (((ArtMap <Comparable []>) index).prefixMap (prefix).values ());
+        } else {
+            int c = col (key [0]);
+            for (Comparable [] tup : tuples) {
+                if (tup [c] instanceof String && ((String) tup [c]).startsWith (prefix)) rows.add (tup);
+            } // for
+        } // if
+
+        return new Table (name + count++, attribute, domain, key, rows, index_type);
+    } // prefixSelect
 
     /************************************************************************************
-     * Union this table and table2.  Check that the two tables are compatible.
+     * Union this table and table2.  Check that the two tables are compatible.  Duplicate
+     * tuples are eliminated (set semantics).
      *
      * #usage movie.union (show)
      *
@@ -296,20 +725,31 @@ public class Table
      */
     public Table union (Table table2)
     {
-        out.println ("RA> " + name + ".union (" + table2.name + ")");
-        if (! compatible (table2)) return null; // Check that the two tables are compatible
-
-        List <Comparable []> rows = new ArrayList <> ();
+        return union (table2, false);
+    } // union
 
-        rows.addAll(tuples); //Fill empty rows object with tuples from the first table 
-        rows.addAll(table2.tuples); //Concatenate tuples from the table2 to that of the first table in rows.
+    /************************************************************************************
+     * Union this table and table2 with set semantics (each distinct tuple once) or bag
+     * semantics (all tuples of both tables).  Check that the two tables are compatible.
+     *
+     * #usage movie.union (show, true)
+     *
+     * @param table2  the rhs table in the union operation
+     * @param isBag   whether to keep duplicates
+     * @return  a table representing the union
+     */
+    public Table union (Table table2, boolean isBag)
+    {
+        out.println ("RA> " + name + ".union (" + table2.name + (isBag ? ", bag" : "") + ")");
+        if (! compatible (table2)) return null; // Check that the two tables are compatible
 
-        return new Table (name + count++, attribute, domain, key, rows, index_type);
+        return new Table (name + count++, attribute, domain, key, setOp (table2, UNION, isBag), index_type);
     } // union
 
     /************************************************************************************
      * Take the difference of this table and table2.  Check that the two tables are
-     * compatible.
+     * compatible.  Tuples are compared by value and the result has no duplicates (set
+     * semantics).
      *
      * #usage movie.minus (show)
      *
@@ -318,30 +758,148 @@ public class Table
      */
     public Table minus (Table table2)
     {
-        out.println ("RA> " + name + ".minus (" + table2.name + ")");
+        return minus (table2, false);
+    } // minus
+
+    /************************************************************************************
+     * Take the difference of this table and table2 with set semantics (the distinct
+     * tuples not in table2) or bag semantics (each tuple of table2 cancels one equal
+     * tuple of this table).  Check that the two tables are compatible.
+     *
+     * #usage movie.minus (show, true)
+     *
+     * @param table2  The rhs table in the minus operation
+     * @param isBag   whether to keep duplicates
+     * @return  a table representing the difference
+     */
+    public Table minus (Table table2, boolean isBag)
+    {
+        out.println ("RA> " + name + ".minus (" + table2.name + (isBag ? ", bag" : "") + ")");
         if (! compatible (table2)) return null;
 
+        return new Table (name + count++, attribute, domain, key, setOp (table2, MINUS, isBag), index_type);
+    } // minus
+
+    /************************************************************************************
+     * Intersect this table and table2: the distinct tuples in both tables (set
+     * semantics).  Check that the two tables are compatible.
+     *
+     * #usage movie.intersect (show)
+     *
+     * @param table2  The rhs table in the intersect operation
+     * @return  a table representing the intersection
+     */
+    public Table intersect (Table table2)
+    {
+        return intersect (table2, false);
+    } // intersect
+
+    /************************************************************************************
+     * Intersect this table and table2 with set semantics (the distinct tuples in both)
+     * or bag semantics (each tuple as often as it occurs in both tables).  Check that
+     * the two tables are compatible.
+     *
+     * #usage movie.intersect (show, true)
+     *
+     * @param table2  The rhs table in the intersect operation
+     * @param isBag   whether to keep duplicates
+     * @return  a table representing the intersection
+     */
+    public Table intersect (Table table2, boolean isBag)
+    {
+        out.println ("RA> " + name + ".intersect (" + table2.name + (isBag ? ", bag" : "") + ")");
+        if (! compatible (table2)) return null;
+
+        return new Table (name + count++, attribute, domain, key, setOp (table2, INTERSECT, isBag), index_type);
+    } // intersect
+
+    /************************************************************************************
+     * Compute the union, difference or intersection of the tuples of this table and
+     * table2, comparing whole tuples by value.  If both tables are clustered on the same
+     * primary key, they are merged group by group of equal keys (equal tuples have
+     * equal keys), so only one group of each is hashed at a time; otherwise all of
+     * table2 is hashed (see combine).  For minus, a Bloom filter of table2 (if any)
+     * rules out tuples before the hash probe.  Tuples of this table keep their order.
+     *
+     * @param table2  the rhs table
+     * @param op      the operation (UNION, MINUS or INTERSECT)
+     * @param isBag   whether to use bag (rather than set) semantics
+     * @return  the resulting tuples
+     */
+    private List <Comparable []> setOp (Table table2, int op, boolean isBag)
+    {
         List <Comparable []> rows = new ArrayList <> ();
+        if (op == UNION && isBag) {
+            rows.addAll (tuples);
+            rows.addAll (table2.tuples);
+            return rows;
+        } // if
 
-        for(int i = 0; i < tuples.size(); i++){
-            boolean inTable = false;
-            for(int j = 0; j < table2.tuples.size(); j++){
-                if(tuples[i]==(table2.tuples[j])){
-                    inTable = true;
-                }
-            }
-            if(!inTable){
-                rows.add(tuples[i]);
-            }
-        }
+        BloomFilter bf     = null;                              // any filter of table2, by column position
+        int []      bfCols = null;
+        if (op == MINUS && ! table2.deferIndex) {
+            for (Map.Entry <String, BloomFilter> e : table2.bloom.entrySet ()) {
+                bf     = e.getValue ();
+                bfCols = table2.match (e.getKey ().split (" "));
+                break;
+            } // for
+        } // if
 
-        return new Table (name + count++, attribute, domain, key, rows, index_type);
-    } // minus
+        if (! Arrays.equals (key, table2.key) || ! isClustered () || ! table2.isClustered ()) {
+            combine (tuples, table2.tuples, op, isBag, bf, bfCols, rows);
+            return rows;
+        } // if
+
+        int [] cols = match (key);
+        int    i = 0, j = 0, n1 = tuples.size (), n2 = table2.tuples.size ();
+        while (i < n1 || j < n2) {                              // merge the groups of equal keys
+            Comparable [] g = (j >= n2 || i < n1 && compareCols (tuples.get (i), cols, table2.tuples.get (j), cols) <= 0)
+                            ? tuples.get (i) : table2.tuples.get (j);
+            List <Comparable []> g1 = new ArrayList <> (), g2 = new ArrayList <> ();
+            while (i < n1 && compareCols (tuples.get (i), cols, g, cols) == 0) g1.add (tuples.get (i++));
+            while (j < n2 && compareCols (table2.tuples.get (j), cols, g, cols) == 0) g2.add (table2.tuples.get (j++));
+            combine (g1, g2, op, isBag, bf, bfCols, rows);
+        } // while
+        return rows;
+    } // setOp
+
+    /************************************************************************************
+     * Compute the union, difference or intersection of the tuples t1 and t2, appending
+     * the result to rows.  The tuples of t2 are counted in a hash table keyed on the
+     * whole tuple; each tuple of t1 then consumes a count (bag semantics) or checks for
+     * one, while a second hash set drops repeated tuples (set semantics).  A tuple of t1
+     * that misses the Bloom filter bf (on columns cols of t2) is not in t2, so its probe
+     * is skipped.
+     */
+    private static void combine (List <Comparable []> t1, List <Comparable []> t2, int op, boolean isBag,
+                                 BloomFilter bf, int [] cols, List <Comparable []> rows)
+    {
+        Set <KeyType> seen = new HashSet <> ();
+        if (op == UNION) {
+            for (Comparable [] t : t1) if (seen.add (new KeyType (t))) rows.add (t);
+            for (Comparable [] t : t2) if (seen.add (new KeyType (t))) rows.add (t);
+            return;
+        } // if
+
+        Map <KeyType, int []> counts = new HashMap <> (2 * t2.size ());
+        for (Comparable [] t : t2) counts.computeIfAbsent (new KeyType (t), k -> new int [1]) [0]++;
+        for (Comparable [] t : t1) {
+            KeyType k = new KeyType (t);
+            int []  c = (bf != null && ! bf.mightContain (KeyType.of (extract (t, cols)))) ? null : counts.get (k);
+            boolean in = c != null && c [0] > 0;
+            if (isBag && in) c [0]--;
+            if (in != (op == INTERSECT)) continue;              // minus keeps the tuples not in t2
+            if (isBag || seen.add (k)) rows.add (t);
+        } // for
+    } // combine
 
     /************************************************************************************
      * Join this table and table2 by performing an "equi-join".  Tuples from both tables
      * are compared requiring attributes1 to equal attributes2.  Disambiguate attribute
-     * names by append "2" to the end of any duplicate attribute name.
+     * names by append "2" to the end of any duplicate attribute name.  A secondary index
+     * on the join attributes of either table is probed if there is one; otherwise the
+     * tables are merge joined if both are available in join attribute order (see
+     * mergeJoin) and hash joined if not (see hashJoin).
      *
      * #usage movie.join ("studioNo", "name", studio)
      *
@@ -361,105 +919,442 @@ public class Table
 
         List <Comparable []> rows = new ArrayList <> ();
 
-        tuples.forEach(t1->rows.addAll(table2.tuples.stream()
-                .filter(t2 ->
-                        Arrays.equals(extract(t1,t_attrs), table2.extract(t2, u_attrs)))
-                .map(match ->
-                        ArrayUtil.concat(t1,match))
-                .collect(Collectors.toList())));
-
-        // Add a 2 to each of the fields in table 2 that have the same name as a field in table 1
-        String[] t2_attribute = Arrays.stream(table2.attribute)
-                .map(a -> {
-                    if (Arrays.asList(attribute).contains(a)) a += "2";
-                    return a;
-                })
-                .toArray(size -> new String[size]);
-
-        return new Table (name + count++, ArrayUtil.concat (attribute, table2.attribute),
+        SecondaryIndex si2 = table2.deferIndex ? null : table2.secIndex.get (attributes2);
+        SecondaryIndex si1 = deferIndex ? null : secIndex.get (attributes1);
+        if (si2 != null) {                                      // probe table2's index
+            for (Comparable [] t1 : tuples) {
+                PostingList rids = si2.get (si2.key (extract (t1, t_attrs)));
+                for (int i = 0; i < rids.size (); i++) {
+                    rows.add (ArrayUtil.concat (t1, table2.tuples.get (rids.get (i))));
+                } // for
+            } // for
+        } else if (si1 != null) {                               // probe this table's index
+            for (Comparable [] t2 : table2.tuples) {
+                PostingList rids = si1.get (si1.key (table2.extract (t2, u_attrs)));
+                for (int i = 0; i < rids.size (); i++) {
+                    rows.add (ArrayUtil.concat (tuples.get (rids.get (i)), t2));
+                } // for
+            } // for
+        } else if (hasOrder (t_attrs) && table2.hasOrder (u_attrs)) {
+            rows.addAll (mergeJoin (inOrder (t_attrs), match (t_attrs), table2.inOrder (u_attrs), table2.match (u_attrs)));
+        } else {
+            rows.addAll (hashJoin (tuples, match (t_attrs), table2.tuples, table2.match (u_attrs)));
+        } // if
+
+        return new Table (name + count++, joinAttributes (table2),
                 ArrayUtil.concat (domain, table2.domain), key, rows, index_type);
     } // join
 
-    public Table indexedJoin(String attributes1, String attributes2, Table table2) {
-        String[] tAttrs = attributes1.split(" ");
-        String[] uAttrs = attributes2.split(" ");
-        String[] tkAttrs = new String[table2.key.length];
-        String[] ukAttrs = new String[this.key.length];
-        List<Comparable[]> rows = new ArrayList<>();
-
-        // For each key attribute in table 2, check to see if it is in uAttrs and
-        // tAttrs; if not, set found to false and stop looking (all must match)
-        boolean uFound = false;
-        for (int i = 0; i < table2.key.length; i++) {
-            uFound = false;
-            for (int j = 0; j < uAttrs.length; j++) {
-                if (uAttrs[j].equals(table2.key[i])) {
-                    uFound = true;
-                    tkAttrs[i] = tAttrs[j];
-                    ukAttrs[i] = uAttrs[j];
-                }
-                if (!uFound) {
-                    break;
-                }
-            }
-        }
-
-        boolean tFound = false;
-        for (int i = 0; i < this.key.length; i++) {
-            tFound = false;
-            for (int j = 0; j < tAttrs.length; j++) {
-                if (tAttrs[j].equals(this.key[i])) {
-                    tFound = true;
-                    ukAttrs[i] = uAttrs[j];
-                    tkAttrs[i] = tAttrs[j];
-                }
-            }
-            if (!tFound) {
-                break;
-            }
-        }
+    /************************************************************************************
+     * Return the attributes of an equi-join of this table with table2: the attributes
+     * of this table followed by those of table2, where each attribute of table2 that
+     * has the same name as an attribute of this table gets a "2" appended.
+     *
+     * @param table2  the rhs table in the join
+     * @return  the attributes of the joined table
+     */
+    private String [] joinAttributes (Table table2)
+    {
+        String [] t2Attribute = Arrays.stream (table2.attribute)
+                .map (a -> Arrays.asList (attribute).contains (a) ? a + "2" : a)
+                .toArray (String []::new);
+        return ArrayUtil.concat (attribute, t2Attribute);
+    } // joinAttributes
 
-        // If all key attributes found and the domains for those attributes match,
-        // join using index
-        if (uFound) {
-            // For each tuple in this.table, project it onto the
-            for (int i = 0; i < this.tuples.size(); i++) {
-                Comparable[] tuple0 = this.tuples[i];
-                Comparable[] tuple1 = table2.index.get(new KeyType(this.extract(tuple0, tkAttrs)));
-                if (tuple1 != null && Arrays.equals(extract(tuple1, uAttrs), extract(tuple0, tAttrs)))
-                    rows.add(ArrayUtil.concat(tuple0, tuple1));
-            }
-        } else if (tFound) {
-            for (int i = 0; i < table2.tuples.size(); i++) {
-                Comparable[] tuple0 = table2.tuples[i];
-                Comparable[] tuple1 = index.get(new KeyType(table2.extract(tuple0, uAttrs)));
-                if (tuple1 != null && Arrays.equals(extract(tuple1, tAttrs), table2.extract(tuple0, uAttrs))) ;
-                rows.add(ArrayUtil.concat(tuple1, tuple0));
-            }
+    /************************************************************************************
+     * Join this table and table2 on attributes1 = attributes2 by an index nested-loop
+     * join: the tuples of one table probe an index of the other on its join attributes.
+     * Either the primary index (when the join attributes are the primary key, in any
+     * order, and the index holds the tuples) or a secondary index (which may return
+     * several matches per probe) is used, preferring an index of table2.  Without an
+     * index on either side, the tables are hash joined.  Duplicate attribute names of
+     * table2 get a "2" appended.
+     *
+     * #usage transcript.indexedJoin ("studId", "id", student)
+     *
+     * @param attributes1  the attributes of this table to be compared
+     * @param attributes2  the attributes of table2 to be compared
+     * @param table2       the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table indexedJoin (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".indexedJoin (" + attributes1 + ", " + attributes2 + ", "
+                     + table2.name + ")");
+
+        String []            t_attrs = attributes1.split (" ");
+        String []            u_attrs = attributes2.split (" ");
+        int []               perm2   = table2.usePrimary () ? table2.keyOrder (u_attrs) : null;
+        int []               perm1   = usePrimary () ? keyOrder (t_attrs) : null;
+        SecondaryIndex       si2     = table2.secIndex.get (attributes2);
+        SecondaryIndex       si1     = secIndex.get (attributes1);
+        List <Comparable []> rows;
+
+        if (! table2.deferIndex && (perm2 != null || si2 != null)) {
+            if (perm2 != null) table2.adapt (IndexAdvisor.JOIN, tuples.size ());
+            rows = table2.probeJoin (tuples, match (t_attrs), perm2, si2, false);
+        } else if (! deferIndex && (perm1 != null || si1 != null)) {
+            if (perm1 != null) adapt (IndexAdvisor.JOIN, table2.tuples.size ());
+            rows = probeJoin (table2.tuples, table2.match (u_attrs), perm1, si1, true);
         } else {
-            tuples.forEach(t1 -> rows.addAll(table2.tuples.stream()
-                    .filter(t2 ->
-                            Arrays.equals(extract(t1, tAttrs), table2.extract(t2, uAttrs)))
-                    .map(match ->
-                            ArrayUtil.concat(t1, match))
-                    .collect(Collectors.toList())));
-        }
+            rows = hashJoin (tuples, match (t_attrs), table2.tuples, table2.match (u_attrs));
+        } // if
 
-        String[] t2Attribute = Arrays.stream(table2.attribute)
-                .map(a -> {
-                    if (Arrays.asList(attribute).contains(a)) a += "2";
-                    return a;
-                })
-                .toArray(size -> new String[size]);
+        return new Table (name + count++, joinAttributes (table2),
+                          ArrayUtil.concat (domain, table2.domain), key, rows, index_type);
+    } // indexedJoin
 
-        return new Table(name + count++, ArrayUtil.concat(attribute, t2Attribute),
-                ArrayUtil.concat(domain, table2.domain), key, rows, index_type);
-    }
+    /************************************************************************************
+     * Probe an index of this table with the join values of the outer tuples, joining
+     * each with its matches.  The outer tuples are processed in batches of BATCH: the
+     * probe keys of a batch are sorted (by key for an ordered index, so that successive
+     * B+tree lookups share their descent; by hash code for a hash index, so that probes
+     * into the same bucket are adjacent), equal keys are looked up once, and the results
+     * are emitted in the original order of the outer tuples.
+     *
+     * @param outer      the outer tuples
+     * @param oCols      the positions of the join columns in the outer tuples
+     * @param perm       the join column of each primary key attribute (null to use si)
+     * @param si         the secondary index on the join attributes (used if perm is null)
+     * @param innerLeft  whether this table's tuple comes first in each joined tuple
+     * @return  the joined tuples
+     */
+    @SuppressWarnings("unchecked")
+    private List <Comparable []> probeJoin (List <Comparable []> outer, int [] oCols, int [] perm,
+                                            SecondaryIndex si, boolean innerLeft)
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+        Map <KeyType, ?>     map  = (perm != null) ? index : si.entries ();
+        int []               cols = oCols;
+        if (perm != null) {                                     // probe values in key order
+            cols = new int [perm.length];
+            for (int j = 0; j < perm.length; j++) cols [j] = oCols [perm [j]];
+        } // if
+        Comparator <KeyType> order = isOrdered (map) ? Comparator.naturalOrder ()
+                                   : Comparator.comparingInt (KeyType::hashCode).thenComparing (Comparator.naturalOrder ());
+
+        int              n     = outer.size ();
+        Comparable [][]  batch = new Comparable [Math.min (BATCH, n)][];
+        for (int start = 0; start < n; start += BATCH) {
+            int        m    = Math.min (BATCH, n - start);
+            KeyType [] keys = new KeyType [m];
+            Integer [] ord  = new Integer [m];
+            for (int i = 0; i < m; i++) {
+                batch [i] = outer.get (start + i);
+                Comparable [] vals = extract (batch [i], cols);
+                keys [i] = (perm != null) ? keyOf (vals) : si.key (vals);
+                ord [i]  = i;
+            } // for
+            Arrays.sort (ord, (a, b) -> order.compare (keys [a], keys [b]));
+
+            KeyType [] sorted = new KeyType [m];
+            for (int i = 0; i < m; i++) sorted [i] = keys [ord [i]];
+            Object [] found = new Object [m];
+            lookupAll (map, sorted, found);
+
+            Object [] hits = new Object [m];
+            for (int i = 0; i < m; i++) hits [ord [i]] = found [i];
+            for (int i = 0; i < m; i++) {
+                if (hits [i] == null) continue;
+                if (hits [i] instanceof PostingList) {
+                    PostingList rids = (PostingList) hits [i];
+                    for (int r = 0; r < rids.size (); r++) {
+                        Comparable [] t = tuples.get (rids.get (r));
+                        rows.add (innerLeft ? ArrayUtil.concat (t, batch [i]) : ArrayUtil.concat (batch [i], t));
+                    } // for
+                } else {
+                    Comparable [] t = (Comparable []) hits [i];
+                    rows.add (innerLeft ? ArrayUtil.concat (t, batch [i]) : ArrayUtil.concat (batch [i], t));
+                } // if
+            } // for
+        } // for
+        return rows;
+    } // probeJoin
+
+    /************************************************************************************
+     * Look up the given (sorted) keys in the index map, storing the value for keys[i] in
+     * vals[i].  A run of equal keys is looked up once; a BpTreeMap looks up the whole
+     * batch in one pass (see BpTreeMap.getAll).
+     */
+    @SuppressWarnings("unchecked")
+    private static void lookupAll (Map <KeyType, ?> map, KeyType [] keys, Object [] vals)
+    {
+        if (map instanceof BpTreeMap) {
+            ((BpTreeMap <KeyType, ?>) map).getAll (keys, vals);
+            return;
+        } // if
+        for (int i = 0; i < keys.length; i++) {
+            vals [i] = (i > 0 && keys [i].equals (keys [i - 1])) ? vals [i - 1] : map.get (keys [i]);
+        } // for
+    } // lookupAll
+
+    /************************************************************************************
+     * Return, for each primary key attribute, its position among the given attributes,
+     * or null if the attributes are not the primary key (in some order).
+     *
+     * @param attrs  the attributes
+     * @return  the position in attrs of each key attribute, or null
+     */
+    private int [] keyOrder (String [] attrs)
+    {
+        if (attrs.length != key.length) return null;
+        int [] perm = new int [key.length];
+        for (int i = 0; i < key.length; i++) {
+            perm [i] = Arrays.asList (attrs).indexOf (key [i]);
+            if (perm [i] < 0) return null;
+        } // for
+        return perm;
+    } // keyOrder
+
+    /************************************************************************************
+     * Join this table and table2 on attributes1 = attributes2 using an in-memory hash
+     * join, regardless of any indexes.  The smaller input is loaded into a hash table,
+     * which the tuples of the larger input then probe, so each tuple is read once.
+     * Duplicate attribute names of table2 get a "2" appended.
+     *
+     * #usage student.hashJoin ("id", "studId", transcript)
+     *
+     * @param attributes1  the attributes of this table to be compared
+     * @param attributes2  the attributes of table2 to be compared
+     * @param table2       the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table hashJoin (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".hashJoin (" + attributes1 + ", " + attributes2 + ", "
+                     + table2.name + ")");
+
+        List <Comparable []> rows = hashJoin (tuples, match (attributes1.split (" ")),
+                                              table2.tuples, table2.match (attributes2.split (" ")));
+
+        return new Table (name + count++, joinAttributes (table2),
+                          ArrayUtil.concat (domain, table2.domain), key, rows, index_type);
+    } // hashJoin
+
+    /************************************************************************************
+     * Hash join the tuples of left and right on the values in columns lCols (of left)
+     * and rCols (of right), returning each matching pair concatenated as left + right.
+     * The smaller input is the build side: its tuples are grouped by join key (single
+     * and pair keys use KeyType's compact forms) in a hash table, which the larger input
+     * probes as it is streamed once.  A build side of more than memoryTuples tuples is
+     * partitioned to disk first (see HashJoin).
+     *
+     * @param left   the tuples of the left input
+     * @param lCols  the positions of the join columns in left
+     * @param right  the tuples of the right input
+     * @param rCols  the positions of the join columns in right
+     * @return  the joined tuples
+     */
+    static List <Comparable []> hashJoin (List <Comparable []> left, int [] lCols,
+                                          List <Comparable []> right, int [] rCols)
+    {
+        return hashJoin (left, lCols, right, rCols, null);
+    } // hashJoin
+
+    /************************************************************************************
+     * Hash join the tuples of left and right as above, but keeping only the columns rOut
+     * of each right tuple (e.g., to drop the duplicate columns of a natural join).
+     *
+     * @param left   the tuples of the left input
+     * @param lCols  the positions of the join columns in left
+     * @param right  the tuples of the right input
+     * @param rCols  the positions of the join columns in right
+     * @param rOut   the positions of the right columns to output (null for all)
+     * @return  the joined tuples
+     */
+    static List <Comparable []> hashJoin (List <Comparable []> left, int [] lCols,
+                                          List <Comparable []> right, int [] rCols, int [] rOut)
+    {
+        return HashJoin.join (left, lCols, right, rCols, rOut, memoryTuples);
+    } // hashJoin
+
+    /************************************************************************************
+     * Join this table and table2 on attributes1 = attributes2 using a sort-merge join.
+     * Each input is read in join attribute order, taken from its existing order when
+     * there is one (see inOrder) and produced by an external sort otherwise, and the two
+     * ordered streams are merged in a single pass.  Duplicate attribute names of table2
+     * get a "2" appended.
+     *
+     * #usage student.mergeJoin ("id", "studId", transcript)
+     *
+     * @param attributes1  the attributes of this table to be compared
+     * @param attributes2  the attributes of table2 to be compared
+     * @param table2       the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table mergeJoin (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".mergeJoin (" + attributes1 + ", " + attributes2 + ", "
+                     + table2.name + ")");
+
+        String [] t_attrs = attributes1.split (" ");
+        String [] u_attrs = attributes2.split (" ");
+        List <Comparable []> rows = mergeJoin (inOrder (t_attrs), match (t_attrs),
+                                               table2.inOrder (u_attrs), table2.match (u_attrs));
+
+        return new Table (name + count++, joinAttributes (table2),
+                          ArrayUtil.concat (domain, table2.domain), key, rows, index_type);
+    } // mergeJoin
+
+    /************************************************************************************
+     * Merge join two streams of tuples sorted on their join columns, returning each
+     * matching pair concatenated as left + right.  Only the current run of right tuples
+     * sharing a join value is buffered; it is joined with every left tuple carrying
+     * that value, so duplicates on both sides produce their full cross product.
+     *
+     * @param left   the left tuples, sorted on lCols
+     * @param lCols  the positions of the join columns in left
+     * @param right  the right tuples, sorted on rCols
+     * @param rCols  the positions of the join columns in right
+     * @return  the joined tuples
+     */
+    static List <Comparable []> mergeJoin (Iterator <Comparable []> left, int [] lCols,
+                                           Iterator <Comparable []> right, int [] rCols)
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+        List <Comparable []> run  = new ArrayList <> ();
+        Comparable []        l    = left.hasNext ()  ? left.next ()  : null;
+        Comparable []        r    = right.hasNext () ? right.next () : null;
+        while (l != null && r != null) {
+            int cmp = compareCols (l, lCols, r, rCols);
+            if (cmp < 0) {
+                l = left.hasNext () ? left.next () : null;
+            } else if (cmp > 0) {
+                r = right.hasNext () ? right.next () : null;
+            } else {
+                Comparable [] first = r;                        // collect the run of equal right tuples
+                run.clear ();
+                do {
+                    run.add (r);
+                    r = right.hasNext () ? right.next () : null;
+                } while (r != null && compareCols (first, rCols, r, rCols) == 0);
+                do {                                            // join it with the equal left tuples
+                    for (Comparable [] u : run) rows.add (ArrayUtil.concat (l, u));
+                    l = left.hasNext () ? left.next () : null;
+                } while (l != null && compareCols (l, lCols, first, rCols) == 0);
+            } // if
+        } // while
+        return rows;
+    } // mergeJoin
+
+    /************************************************************************************
+     * Determine whether the tuples of this table can be read in the order of the given
+     * attributes without sorting: the attributes are the primary key and the table is
+     * clustered on it or has an ordered primary index holding its tuples, or they have
+     * an ordered secondary index.
+     *
+     * @param attrs  the attributes
+     * @return  whether an order on the attributes is available
+     */
+    private boolean hasOrder (String [] attrs)
+    {
+        boolean isKey = Arrays.equals (attrs, key);
+        if (isKey && isClustered ()) return true;
+        if (deferIndex) return false;
+        if (isKey && usePrimary () && isOrdered (index)) return true;
+        SecondaryIndex si = secIndex.get (String.join (" ", attrs));
+        return si != null && isOrdered (si.entries ());
+    } // hasOrder
+
+    /************************************************************************************
+     * Return the tuples of this table in the order of the given attributes.  An available
+     * order (see hasOrder) is used as is: a clustered table is read directly, and an
+     * ordered index yields its tuples in key order.  Otherwise the tuples are sorted,
+     * spilling sorted runs to disk when there are more than memoryTuples.
+     *
+     * @param attrs  the attributes to order by
+     * @return  an iterator over the tuples in order
+     */
+    private Iterator <Comparable []> inOrder (String [] attrs)
+    {
+        boolean isKey = Arrays.equals (attrs, key);
+        if (isKey && isClustered ()) return tuples.iterator ();
+
+        List <Comparable []> rows = new ArrayList <> (tuples.size ());
+        if (isKey && usePrimary () && isOrdered (index)) {
+            orderedRange (index, null, true, null, true, (k, tup) -> rows.add (tup));
+            return rows.iterator ();
+        } // if
+        SecondaryIndex si = secIndex.get (String.join (" ", attrs));
+        if (! deferIndex && si != null && isOrdered (si.entries ())) {
+            orderedRange (si.entries (), null, true, null, true, (k, pl) -> {
+                for (int i = 0; i < pl.size (); i++) rows.add (tuples.get (pl.get (i)));
+            });
+            return rows.iterator ();
+        } // if
+
+        int [] cols = match (attrs);
+        return ExternalSort.sort (tuples, (a, b) -> compareCols (a, cols, b, cols), memoryTuples);
+    } // inOrder
+
+    /************************************************************************************
+     * Compare the values of tuple a in columns aCols with those of tuple b in columns
+     * bCols, attribute by attribute.
+     */
+    @SuppressWarnings("unchecked")
+    static int compareCols (Comparable [] a, int [] aCols, Comparable [] b, int [] bCols)
+    {
+        for (int j = 0; j < aCols.length; j++) {
+            int cmp = a [aCols [j]].compareTo (b [bCols [j]]);
+            if (cmp != 0) return cmp;
+        } // for
+        return 0;
+    } // compareCols
+
+    /************************************************************************************
+     * Semi-join this table with table2: keep the tuples of this table that have at least
+     * one tuple in table2 with attributes2 equal to their attributes1.  A Bloom filter
+     * on attributes2 of table2 rules out most non-matching tuples with a few bit probes;
+     * the rest are checked against an index of table2 or a hash set of its values.
+     *
+     * #usage student.semiJoin ("id", "studId", transcript)
+     *
+     * @param attributes1  the attributes of this table to be compared
+     * @param attributes2  the attributes of table2 to be compared
+     * @param table2       the rhs table in the semi-join operation
+     * @return  a table with the tuples of this table having a match in table2
+     */
+    public Table semiJoin (String attributes1, String attributes2, Table table2)
+    {
+        out.println ("RA> " + name + ".semiJoin (" + attributes1 + ", " + attributes2 + ", "
+                     + table2.name + ")");
+
+        String []            u_attrs = attributes2.split (" ");
+        int []               t_cols  = match (attributes1.split (" "));
+        int []               u_cols  = table2.match (u_attrs);
+        BloomFilter          bf      = table2.deferIndex ? null : table2.bloom.get (attributes2);
+        SecondaryIndex       si      = table2.deferIndex ? null : table2.secIndex.get (attributes2);
+        boolean              isKey   = table2.usePrimary () && Arrays.equals (u_attrs, table2.key);
+        Set <KeyType>        values  = null;
+        List <Comparable []> rows    = new ArrayList <> ();
+
+        for (Comparable [] t : tuples) {
+            Comparable [] vals = extract (t, t_cols);
+            KeyType       k    = KeyType.of (vals);
+            if (bf != null && ! bf.mightContain (k)) continue;
+            boolean found;
+            if (si != null) {
+                found = si.get (si.key (vals)).size () > 0;
+            } else if (isKey) {
+                found = table2.index.get (table2.keyOf (vals)) != null;
+            } else {
+                if (values == null) {                           // built on the first probe
+                    values = new HashSet <> ();
+                    for (Comparable [] u : table2.tuples) values.add (KeyType.of (extract (u, u_cols)));
+                } // if
+                found = values.contains (k);
+            } // if
+            if (found) rows.add (t);
+        } // for
+
+        return new Table (name + count++, attribute, domain, key, rows, index_type);
+    } // semiJoin
 
     /************************************************************************************
      * Join this table and table2 by performing an "natural join".  Tuples from both tables
      * are compared requiring common attributes to be equal.  The duplicate column is also
-     * eliminated.
+     * eliminated.  The tables are hash joined on the common attributes (see hashJoin),
+     * with the output schema and the column positions worked out once up front.
      *
      * #usage movieStar.join (starsIn)
      *
@@ -470,54 +1365,21 @@ public class Table
     {
         out.println ("RA> " + name + ".join (" + table2.name + ")");
 
-        List <Comparable []> rows = new ArrayList <> ();
-
-        // find attributes in common between tables
-        List <String> common_attr = new ArrayList<>();
-        String [] r_attr = attribute;
-        String [] s_attr = table2.attribute;
-
-        for (int i = 0; i < r_attr.length; i++) {
-            for (int j = 0; j < s_attr.length; j++) {
-                if (r_attr[i].equals(s_attr[j])) {
-                    common_attr.add(r_attr[i]);
-                    break;
-                }
-            }
-        }
+        // find attributes in common between tables and the columns of table2 to keep
+        List <String> common_attr = new ArrayList <> ();
+        List <String> rest_attr   = new ArrayList <> ();
+        for (String a : table2.attribute) {
+            if (Arrays.asList (attribute).contains (a)) common_attr.add (a);
+            else rest_attr.add (a);
+        } // for
+        String [] common = common_attr.toArray (new String [0]);
+        String [] rest   = rest_attr.toArray (new String [0]);
+        int []    keep   = table2.match (rest);
 
-        // for each tuple r in R do
-        for (int i = 0; i < tuples.size(); i++) {
-            // for each tuple in S do
-            for (int j = 0; j < table2.tuples.size(); j++) {
-                // if r and s satisfy the join condition
-                boolean flag = false;
-                for (int k = 0; k < common_attr.size(); k++) {
-                    Comparable r_comm = tuples[i][col(common_attr[k])];
-                    Comparable s_comm = table2.tuples[j][table2.col(common_attr[k])];
-
-                    if (!r_comm.equals(s_comm))
-                        flag = true;
-                }
-
-                if (flag)
-                    continue;
-
-                Comparable [] joined = new Comparable[tuples[i].length + table2.tuples[j].length];
-                for (int k = 0; k < joined.length; k++) {
-                    if (k < tuples[i].length)
-                        joined[k] = tuples[i][k];
-                    else
-                        joined[k] = table2.tuples[j][k - tuples[i].length];
-                }
-
-                rows.add(joined);
-            }
-        }
+        List <Comparable []> rows = hashJoin (tuples, match (common), table2.tuples, table2.match (common), keep);
 
-        // FIX - eliminate duplicate columns
-        return new Table (name + count++, ArrayUtil.concat (attribute, table2.attribute),
-                ArrayUtil.concat (domain, table2.domain), key, rows, index_type);
+        return new Table (name + count++, ArrayUtil.concat (attribute, rest),
+                ArrayUtil.concat (domain, extractDom (keep, table2.domain)), key, rows, index_type);
     } // join
 
     /************************************************************************************
@@ -535,6 +1397,107 @@ public class Table
         return -1;  // not found
     } // col
 
+    /************************************************************************************
+     * Create a secondary index on the given (not necessarily key) attributes.  The index
+     * is multi-valued (maps each value to a posting list of row ids), built from the
+     * current tuples and maintained on insert.  For low-cardinality attributes, the
+     * "BitmapIndex" type keeps a compressed bitmap of row ids per distinct value.
+     *
+     * #usage professor.createIndex ("name", "BpTreeMap")
+     * #usage student.createIndex ("status", "BitmapIndex")
+     *
+     * @param attributes  the attributes to index
+     * @param mapType     the type of map to use for the index (or "BitmapIndex")
+     */
+    public void createIndex (String attributes, String mapType)
+    {
+        createIndex (attributes, mapType, "");
+    } // createIndex
+
+    /************************************************************************************
+     * Create a covering secondary index on the given attributes that also stores the
+     * values of the included attributes in its entries, so that selectProject can answer
+     * queries on the indexed and included attributes without touching the tuples.
+     *
+     * #usage student.createIndex ("id", "BpTreeMap", "name")
+     *
+     * @param attributes  the attributes to index
+     * @param mapType     the type of map to use for the index
+     * @param include     the attributes to include in the index entries (may be empty)
+     */
+    public void createIndex (String attributes, String mapType, String include)
+    {
+        out.println ("DDL> create index on " + name + " (" + attributes + ") using " + mapType
+                     + (include.isEmpty () ? "" : " include (" + include + ")"));
+
+        String [] attrs = attributes.split (" ");
+        if (mapType.equals ("BitmapIndex")) {
+            if (attrs.length != 1) {
+                out.println ("createIndex ERROR: a bitmap index is on a single attribute");
+                return;
+            } // if
+            BitmapIndex bi = new BitmapIndex (attributes, col (attributes));
+            for (int i = 0; i < tuples.size (); i++) bi.add (tuples.get (i), i);
+            bitmapIndex.put (attributes, bi);
+            return;
+        } // if
+
+        int []    cols  = match (attrs);
+        String [] incl  = include.isEmpty () ? new String [0] : include.split (" ");
+        SecondaryIndex si = new SecondaryIndex (attrs, cols, mapType, encodeKeys && encodable (cols),
+                                                incl, match (incl));
+        for (int i = 0; i < tuples.size (); i++) si.add (tuples.get (i), i);
+        secIndex.put (attributes, si);
+    } // createIndex
+
+    /************************************************************************************
+     * Create a Bloom filter on the given attributes (e.g., the primary key or a join
+     * column).  The filter is built from the current tuples, maintained on insert (and
+     * rebuilt larger when it fills up) and saved with the table.  Key selections, minus
+     * and semi-joins check it first, so that lookups of absent values are cheap.
+     *
+     * #usage transcript.createBloomFilter ("studId")
+     *
+     * @param attributes  the attributes to build the filter on
+     */
+    public void createBloomFilter (String attributes)
+    {
+        out.println ("DDL> create bloom filter on " + name + " (" + attributes + ")");
+
+        bloom.put (attributes, buildFilter (attributes, 2 * tuples.size (), tuples));
+    } // createBloomFilter
+
+    /************************************************************************************
+     * Turn normalized key encoding for this table's indexes on or off.  When on, index
+     * keys carry an order-preserving byte encoding (see KeyEncoder), so sorted indexes
+     * such as BpTreeMap compare keys with a single unsigned long comparison in most
+     * cases.  The existing indexes are rebuilt.
+     *
+     * #usage transcript.setKeyEncoding (true)
+     *
+     * @param on  whether to encode index keys
+     */
+    public void setKeyEncoding (boolean on)
+    {
+        int [] cols = match (key);
+        if (on && ! encodable (cols)) {
+            out.println ("setKeyEncoding ERROR: primary key of " + name + " has a domain that cannot be encoded");
+            return;
+        } // if
+        encodeKeys = on;
+
+        index = makeMap (index.getClass ().getSimpleName (), Comparable [].class);
+        for (Comparable [] tup : tuples) {
+            Comparable [] keyVal = new Comparable [cols.length];
+            for (int j = 0; j < cols.length; j++) keyVal [j] = tup [cols [j]];
+            index.put (keyOf (keyVal), tup);
+        } // for
+        indexed = true;
+        for (SecondaryIndex si : new ArrayList <> (secIndex.values ())) {
+            createIndex (String.join (" ", si.getAttrs ()), si.getMapType (), String.join (" ", si.getInclude ()));
+        } // for
+    } // setKeyEncoding
+
     /************************************************************************************
      * Insert a tuple to the table.
      *
@@ -550,16 +1513,101 @@ public class Table
 
         if (typeCheck (tup)) {
             tuples.add (tup);
-            Comparable [] keyVal = new Comparable [key.length];
             int []        cols   = match (key);
+            if (clustered == TRUE && tuples.size () > 1) {      // still in key order?
+                clustered = compareKey (tuples.get (tuples.size () - 2), cols, KeyType.of (extract (tup, cols))) <= 0;
+            } // if
+            if (zones != null) zones.add (tup, tuples.size () - 1);
+            if (deferIndex) return true;                        // indexes are built by endBulkLoad
+            Comparable [] keyVal = new Comparable [key.length];
             for (int j = 0; j < keyVal.length; j++) keyVal [j] = tup [cols [j]];
-            index.put (new KeyType (keyVal), tup);
+            KeyType k = keyOf (keyVal);
+            index.put (k, tup);
+            if (advisor != null) advisor.recordKey (k);
+            adapt (IndexAdvisor.INSERT, 1);
+            for (SecondaryIndex si : secIndex.values ()) si.add (tup, tuples.size () - 1);
+            for (BitmapIndex bi : bitmapIndex.values ()) bi.add (tup, tuples.size () - 1);
+            for (Map.Entry <String, BloomFilter> e : bloom.entrySet ()) {
+                if (e.getValue ().isFull ()) {
+                    e.setValue (buildFilter (e.getKey (), 2 * e.getValue ().capacity (), tuples));
+                } else {
+                    e.getValue ().add (KeyType.of (extract (tup, match (e.getKey ().split (" ")))));
+                } // if
+            } // for
             return true;
         } else {
             return false;
         } // if
     } // insert
 
+    /************************************************************************************
+     * Begin a bulk load: until endBulkLoad is called, insert only appends tuples and
+     * leaves the indexes (primary, secondary, bitmap) and Bloom filters untouched.  The
+     * zone maps are kept and still extended by each append, which only widens the
+     * bounds of the last block.
+     *
+     * #usage transcript.beginBulkLoad ()
+     */
+    public void beginBulkLoad ()
+    {
+        deferIndex = true;
+    } // beginBulkLoad
+
+    /************************************************************************************
+     * End a bulk load by rebuilding all indexes and Bloom filters from the tuples in
+     * parallel on the fork-join pool.  Each secondary index, bitmap index and Bloom
+     * filter is built by its own task, concurrently with the primary index, which is
+     * itself built in parallel (see buildPrimary).
+     *
+     * #usage transcript.endBulkLoad ()
+     */
+    public void endBulkLoad ()
+    {
+        deferIndex = false;
+        List <Comparable []> rows = (tuples instanceof FileList) ? new ArrayList <> (tuples) : tuples;
+        ForkJoinPool         pool = ForkJoinPool.commonPool ();
+
+        String                                      type    = index.getClass ().getSimpleName ();
+        ForkJoinTask <Map <KeyType, Comparable []>> primary = pool.submit (() -> buildPrimary (rows, type));
+        Map <String, ForkJoinTask <SecondaryIndex>> secs    = new LinkedHashMap <> ();
+        for (Map.Entry <String, SecondaryIndex> e : secIndex.entrySet ()) {
+            SecondaryIndex si = e.getValue ().emptyCopy ();
+            secs.put (e.getKey (), pool.submit (() -> {
+                for (int i = 0; i < rows.size (); i++) si.add (rows.get (i), i);
+                return si;
+            }));
+        } // for
+        Map <String, ForkJoinTask <BitmapIndex>> bits = new LinkedHashMap <> ();
+        for (String attr : bitmapIndex.keySet ()) {
+            BitmapIndex bi = new BitmapIndex (attr, col (attr));
+            bits.put (attr, pool.submit (() -> {
+                for (int i = 0; i < rows.size (); i++) bi.add (rows.get (i), i);
+                return bi;
+            }));
+        } // for
+        Map <String, ForkJoinTask <BloomFilter>> filters = new LinkedHashMap <> ();
+        for (String attrs : bloom.keySet ()) {
+            filters.put (attrs, pool.submit (() -> buildFilter (attrs, 2 * rows.size (), rows)));
+        } // for
+
+        index   = primary.join ();
+        indexed = true;
+        secs.forEach ((attrs, task) -> secIndex.put (attrs, task.join ()));
+        bits.forEach ((attr, task) -> bitmapIndex.put (attr, task.join ()));
+        filters.forEach ((attrs, task) -> bloom.put (attrs, task.join ()));
+    } // endBulkLoad
+
+    /************************************************************************************
+     * Get the access path taken by the last selection on this table, e.g., "index
+     * LinHashMap", "secondary index", "bitmap", "bloom filter" or "scan".
+     *
+     * @return  the last access path
+     */
+    public String getAccessPath ()
+    {
+        return accessPath;
+    } // getAccessPath
+
     /************************************************************************************
      * Get the name of the table.
      *
@@ -620,6 +1668,7 @@ public class Table
             ObjectInputStream ois = new ObjectInputStream (new FileInputStream (DIR + name + EXT));
             tab = (Table) ois.readObject ();
             ois.close ();
+            tab.loadIndexes ();
         } catch (IOException ex) {
             out.println ("load: IO Exception");
             ex.printStackTrace ();
@@ -631,14 +1680,17 @@ public class Table
     } // load
 
     /************************************************************************************
-     * Save this table in a file.
+     * Save this table in a file, and each of its (primary and secondary) indexes in an
+     * index file of its own, stamped with the version of the table data.
      */
     public void save ()
     {
         try {
+            dataVersion = new Random ().nextLong ();
             ObjectOutputStream oos = new ObjectOutputStream (new FileOutputStream (DIR + name + EXT));
             oos.writeObject (this);
             oos.close ();
+            saveIndexes ();
         } catch (IOException ex) {
             out.println ("save: IO Exception");
             ex.printStackTrace ();
@@ -773,10 +1825,599 @@ public class Table
         return tuple;
     }
 
+    /************************************************************************************
+     * Make an empty map of the given type for use as an index.
+     *
+     * @param mapType  the type of map ("TreeMap", "BpTreeMap", "LinHashMap", "ExtHashMap",
+     *                 "ArtMap", "LearnedMap",
+     *                 or "Adaptive" for the initial map of an adaptive index)
+     * @param classV   the class for the values stored in the map
+     * @return  an empty map of the given type (a TreeMap if the type is unknown)
+     */
+    static <V> Map <KeyType, V> makeMap (String mapType, Class <V> classV)
+    {
+        switch (mapType) {
+            case "LinHashMap": return new LinHashMap <> (KeyType.class, classV, 16);
+            case "BpTreeMap":  return new BpTreeMap <> (KeyType.class, classV);
+            case "ExtHashMap": return new ExtHashMap <> (KeyType.class, classV, 16);
+            case "ArtMap":     return new ArtMap <> ();
+            case "LearnedMap": return new LearnedMap <> ();
+            case "Adaptive":   return makeMap (IndexAdvisor.INITIAL, classV);
+            default:           return new TreeMap <> ();   // also try BPTreeMap, LinHashMap or ExtHashMap
+        } // switch
+    } // makeMap
+
     //----------------------------------------------------------------------------------
     // Private Methods
     //----------------------------------------------------------------------------------
 
+    /************************************************************************************
+     * Form the primary index key for the given key attribute values.
+     *
+     * @param vals  the values of the primary key attributes
+     * @return  the index key (encoded if key encoding is on)
+     */
+    private KeyType keyOf (Comparable [] vals)
+    {
+        return encodeKeys ? KeyType.encoded (vals) : KeyType.of (vals);
+    } // keyOf
+
+    /************************************************************************************
+     * Record n operations of the given kind on the primary index of an "Adaptive" table
+     * and, when a decision is due, migrate the index to the map type recommended for the
+     * recent workload (e.g., to a B+tree once range selections show up).
+     *
+     * @param kind  the kind of operation (see IndexAdvisor)
+     * @param n     the number of operations
+     */
+    private void adapt (int kind, int n)
+    {
+        if (advisor == null) return;
+        advisor.record (kind, n);
+        if (! advisor.isDue ()) return;
+
+        String current = index.getClass ().getSimpleName ();
+        String stats   = advisor.toString ();
+        String best    = advisor.recommend (current);
+        if (best.equals (current)) return;
+
+        out.println ("Adaptive: migrating index of " + name + " from " + current + " to " + best
+                     + " after " + stats);
+        Map <KeyType, Comparable []> newIndex = makeMap (best, Comparable [].class);
+        for (Map.Entry <KeyType, Comparable []> e : index.entrySet ()) newIndex.put (e.getKey (), e.getValue ());
+        index = newIndex;
+    } // adapt
+
+    /************************************************************************************
+     * Build a primary index of the current map type over the given rows.  The keys are
+     * formed (and hashed) in parallel.  Tree indexes are then built from the keys sorted
+     * in parallel: B+trees and learned indexes bottom-up, other sorted maps by inserting
+     * in key order.  Hash indexes are filled in order of the key hashes (radix
+     * partitioned by a parallel sort), so consecutive inserts go to the same region of
+     * buckets.  As with insert, a later tuple replaces an earlier one with the same key.
+     *
+     * @param rows     the tuples to index
+     * @param mapType  the type of map to build
+     * @return  the new primary index
+     */
+    @SuppressWarnings("unchecked")
+    private Map <KeyType, Comparable []> buildPrimary (List <Comparable []> rows, String mapType)
+    {
+        int        n    = rows.size ();
+        int []     cols = match (key);
+        KeyType [] keys = new KeyType [n];
+        IntStream.range (0, n).parallel ().forEach (i -> keys [i] = keyOf (extract (rows.get (i), cols)));
+
+        Map <KeyType, Comparable []> map = makeMap (mapType, Comparable [].class);
+        if (map instanceof SortedMap) {
+            Integer [] order = new Integer [n];
+            for (int i = 0; i < n; i++) order [i] = i;
+            Arrays.parallelSort (order, (i, j) -> keys [i].compareTo (keys [j]));   // stable
+            int             m  = 0;
+            KeyType []      ks = new KeyType [n];
+            Comparable [][] vs = new Comparable [n][];
+            for (int i = 0; i < n; i++) {
+                KeyType k = keys [order [i]];
+                if (m > 0 && ks [m - 1].compareTo (k) == 0) m--;    // keep the later duplicate
+                ks [m]   = k;
+                vs [m++] = rows.get (order [i]);
+            } // for
+            ks = Arrays.copyOf (ks, m);
+            vs = Arrays.copyOf (vs, m);
+            fillSorted (map, ks, vs);
+        } else {
+            long [] order = new long [n];                       // hash in the high bits, row id in the low
+            for (int i = 0; i < n; i++) order [i] = ((long) keys [i].hashCode () << 32) | i;
+            Arrays.parallelSort (order);
+            for (long o : order) {
+                int i = (int) o;
+                map.put (keys [i], rows.get (i));
+            } // for
+        } // if
+        return map;
+    } // buildPrimary
+
+    /************************************************************************************
+     * Fill the (empty, sorted) map with the keys in strictly ascending order and their
+     * values: B+trees and learned indexes are built bottom-up, other maps by inserting.
+     */
+    @SuppressWarnings("unchecked")
+    private static void fillSorted (Map <KeyType, Comparable []> map, KeyType [] ks, Comparable [][] vs)
+    {
+        if (map instanceof BpTreeMap) {
+            ((BpTreeMap <KeyType, Comparable []>) map).bulkLoad (ks, vs);
+        } else if (map instanceof LearnedMap) {
+            ((LearnedMap <Comparable []>) map).bulkLoad (ks, vs);
+        } else {
+            for (int i = 0; i < ks.length; i++) map.put (ks [i], vs [i]);
+        } // if
+    } // fillSorted
+
+    /************************************************************************************
+     * Return the path of the index file for the given indexed attributes ("pk" for the
+     * primary index).
+     */
+    private String indexPath (String attributes)
+    {
+        return DIR + name + "." + attributes.replace (' ', '_') + IDX;
+    } // indexPath
+
+    /************************************************************************************
+     * Save the primary and secondary indexes in their index files.  Indexes on domains
+     * that have no normalized encoding are not saved (their stale files are removed)
+     * and get rebuilt on load.
+     *
+     * @throws IOException  if an index file cannot be written
+     */
+    private void saveIndexes () throws IOException
+    {
+        int [] cols = match (key);
+        if (encodable (cols)) {
+            Map <KeyType, Integer> rids = new LinkedHashMap <> ();      // a later tuple wins, as in insert
+            for (int i = 0; i < tuples.size (); i++) rids.put (KeyType.of (extract (tuples.get (i), cols)), i);
+            List <byte []> ks = new ArrayList <> ();
+            List <int []>  rs = new ArrayList <> ();
+            for (Map.Entry <KeyType, Integer> e : rids.entrySet ()) {
+                ks.add (KeyEncoder.encode (e.getKey ()));
+                rs.add (new int [] { e.getValue () });
+            } // for
+            IndexFile.write (indexPath ("pk"), index.getClass ().getSimpleName (), dataVersion, ks, rs);
+        } else {
+            Files.deleteIfExists (Paths.get (indexPath ("pk")));
+        } // if
+
+        for (Map.Entry <String, SecondaryIndex> e : secIndex.entrySet ()) {
+            SecondaryIndex si = e.getValue ();
+            if (encodable (match (si.getAttrs ()))) {
+                List <byte []> ks = new ArrayList <> ();
+                List <int []>  rs = new ArrayList <> ();
+                for (Map.Entry <KeyType, PostingList> en : si.entries ().entrySet ()) {
+                    ks.add (KeyEncoder.encode (en.getKey ()));
+                    rs.add (en.getValue ().toArray ());
+                } // for
+                IndexFile.write (indexPath (e.getKey ()), si.getMapType (), dataVersion, ks, rs);
+            } else {
+                Files.deleteIfExists (Paths.get (indexPath (e.getKey ())));
+            } // if
+        } // for
+    } // saveIndexes
+
+    /************************************************************************************
+     * Load the primary and secondary indexes of a table just read by load from their
+     * index files, rebuilding any index whose file is missing, corrupt or stale.
+     */
+    private void loadIndexes ()
+    {
+        int []    cols = match (key);
+        IndexFile f    = encodable (cols) ? IndexFile.read (indexPath ("pk"), dataVersion) : null;
+        if (f != null) {
+            Class []        dom = extractDom (cols, domain);
+            KeyType []      ks  = new KeyType [f.keys.length];
+            Comparable [][] vs  = new Comparable [f.keys.length][];
+            for (int i = 0; i < ks.length; i++) {
+                ks [i] = keyOf (KeyEncoder.decode (f.keys [i], dom).values ());
+                vs [i] = tuples.get (f.rids [i][0]);
+            } // for
+            index = makeMap (f.mapType, Comparable [].class);
+            fillSorted (index, ks, vs);
+        } else {
+            out.println ("load: rebuilding the primary index of " + name);
+            index = buildPrimary (tuples, index_type);
+        } // if
+        indexed = true;
+
+        for (Map.Entry <String, SecondaryIndex> e : secIndex.entrySet ()) {
+            SecondaryIndex si  = e.getValue ().emptyCopy ();
+            int []         sc  = match (si.getAttrs ());
+            IndexFile      g   = encodable (sc) ? IndexFile.read (indexPath (e.getKey ()), dataVersion) : null;
+            if (g != null) {
+                Class [] dom = extractDom (sc, domain);
+                for (int i = 0; i < g.keys.length; i++) {
+                    si.load (si.key (KeyEncoder.decode (g.keys [i], dom).values ()), g.rids [i], tuples);
+                } // for
+            } else {
+                out.println ("load: rebuilding the index on " + name + " (" + e.getKey () + ")");
+                for (int i = 0; i < tuples.size (); i++) si.add (tuples.get (i), i);
+            } // if
+            e.setValue (si);
+        } // for
+    } // loadIndexes
+
+    /************************************************************************************
+     * Return the zone maps of this table, building them from the tuples on first use
+     * (afterwards, insert keeps them up to date).
+     *
+     * @return  the zone maps
+     */
+    private ZoneMap zoneMap ()
+    {
+        if (zones == null) {
+            zones = new ZoneMap (attribute.length);
+            for (int i = 0; i < tuples.size (); i++) zones.add (tuples.get (i), i);
+        } // if
+        return zones;
+    } // zoneMap
+
+    /************************************************************************************
+     * Return the tuples whose values of the given attributes lie in the range between lo
+     * and hi (a null bound means unbounded).  The access path is chosen by cost:
+     *
+     *   - a table clustered on its primary key (tuples stored in key order) is binary
+     *     searched for the start of a primary key range and read sequentially;
+     *   - an ordered primary or secondary index on the attributes (TreeMap, BpTreeMap,
+     *     ArtMap, LearnedMap) is range scanned when the estimated fraction of tuples
+     *     in the range, fetched by random access, costs less than scanning the blocks
+     *     that the zone maps cannot rule out;
+     *   - otherwise those blocks are scanned.
+     *
+     * Hash indexes (LinHashMap, ExtHashMap) have no key order and are never used.
+     *
+     * @param attrs     the attributes to compare
+     * @param lo        the lower bound of the range (or null)
+     * @param isInclLo  whether the lower bound is inclusive
+     * @param hi        the upper bound of the range (or null)
+     * @param isInclHi  whether the upper bound is inclusive
+     * @return  the list of tuples in the range
+     */
+    private List <Comparable []> rangeRows (String [] attrs, KeyType lo, boolean isInclLo, KeyType hi, boolean isInclHi)
+    {
+        List <Comparable []> rows  = new ArrayList <> ();
+        int []               cols  = match (attrs);
+        boolean              isKey = Arrays.equals (attrs, key);
+
+        if (isKey && isClustered ()) {
+            accessPath = "clustered";
+            for (int i = lowerBound (cols, lo, isInclLo); i < tuples.size (); i++) {
+                Comparable [] tup = tuples.get (i);
+                if (hi != null) {
+                    int cmp = compareKey (tup, cols, hi);
+                    if (cmp > 0 || cmp == 0 && ! isInclHi) break;
+                } // if
+                rows.add (tup);
+            } // for
+            return rows;
+        } // if
+
+        ZoneMap    zm    = zoneMap ();                          // prune on the first attribute
+        Comparable lo0   = (lo == null) ? null : lo.get (0);
+        Comparable hi0   = (hi == null) ? null : hi.get (0);
+        boolean    inLo  = isInclLo || cols.length > 1;
+        boolean    inHi  = isInclHi || cols.length > 1;
+        boolean [] live  = new boolean [zm.blocks ()];
+        int        nLive = 0;
+        for (int b = 0; b < live.length; b++) {
+            if (live [b] = zm.mayMatch (b, cols [0], lo0, inLo, hi0, inHi)) nLive++;
+        } // for
+        double scanFrac = (live.length == 0) ? 0.0 : (double) nLive / live.length;
+        double sel      = Math.min (scanFrac, selectivity (zm, cols [0], lo0, hi0));
+        boolean cheap   = ! deferIndex && sel * RANDOM_COST < scanFrac;
+
+        SecondaryIndex si = secIndex.get (String.join (" ", attrs));
+        if (cheap && isKey && usePrimary () && isOrdered (index)) {
+            accessPath = "index " + index.getClass ().getSimpleName ();
+            orderedRange (index, (lo == null) ? null : keyOf (lo.values ()), isInclLo,
+                                 (hi == null) ? null : keyOf (hi.values ()), isInclHi, (k, tup) -> rows.add (tup));
+            return rows;
+        } // if
+        if (cheap && si != null && isOrdered (si.entries ())) {
+            accessPath = "secondary index " + si.getMapType () + " on " + String.join (" ", attrs);
+            orderedRange (si.entries (), (lo == null) ? null : si.key (lo.values ()), isInclLo,
+                                         (hi == null) ? null : si.key (hi.values ()), isInclHi, (k, pl) -> {
+                for (int i = 0; i < pl.size (); i++) rows.add (tuples.get (pl.get (i)));
+            });
+            return rows;
+        } // if
+
+        accessPath = (nLive < live.length) ? "scan (zone maps)" : "scan";
+        for (int b = 0; b < live.length; b++) {
+            if (! live [b]) continue;
+            int end = Math.min ((b + 1) * ZoneMap.BLOCK, tuples.size ());
+            for (int i = b * ZoneMap.BLOCK; i < end; i++) {
+                Comparable [] tup = tuples.get (i);
+                if (inRange (tup, cols, lo, isInclLo, hi, isInclHi)) rows.add (tup);
+            } // for
+        } // for
+        return rows;
+    } // rangeRows
+
+    /************************************************************************************
+     * Return the candidate tuples for the given conjuncts of a predicate found through
+     * an index (see select (Pred)), or null if no index applies (as during a bulk load).
+     */
+    private List <Comparable []> indexRows (List <Pred> conj)
+    {
+        if (deferIndex) return null;
+        List <Comparable []> rows = new ArrayList <> ();
+
+        for (Pred p : conj) {                                   // point lookups
+            String       attr = attrOf (p);
+            Comparable[] vals = valuesOf (p);
+            if (vals == null) continue;
+            SecondaryIndex si = secIndex.get (attr);
+            if (si != null) {
+                accessPath = "secondary index";
+                for (Comparable v : vals) {
+                    PostingList rids = si.get (si.key (new Comparable [] { v }));
+                    for (int i = 0; i < rids.size (); i++) rows.add (tuples.get (rids.get (i)));
+                } // for
+                return rows;
+            } // if
+            if (usePrimary () && key.length == 1 && key [0].equals (attr)) {
+                adapt (IndexAdvisor.POINT, vals.length);
+                accessPath = "index " + index.getClass ().getSimpleName ();
+                for (Comparable v : vals) {
+                    Comparable [] tup = index.get (keyOf (new Comparable [] { v }));
+                    if (tup != null) rows.add (tup);
+                } // for
+                return rows;
+            } // if
+        } // for
+
+        RoaringBitmap rids = null;                              // intersect the bitmaps
+        for (Pred p : conj) {
+            BitmapIndex  bi   = bitmapIndex.get (attrOf (p));
+            Comparable[] vals = valuesOf (p);
+            if (bi == null || vals == null) continue;
+            RoaringBitmap any = new RoaringBitmap ();           // union over an IN list
+            for (Comparable v : vals) any = any.or (bi.get (v));
+            rids = (rids == null) ? any : rids.and (any);
+        } // for
+        if (rids != null) {
+            accessPath = "bitmap";
+            rids.forEach (i -> rows.add (tuples.get (i)));
+            return rows;
+        } // if
+
+        for (Pred p : conj) {                                   // ordered range scans
+            if (! (p instanceof Pred.Range)) continue;
+            Pred.Range     r     = (Pred.Range) p;
+            String []      attrs = { r.attr };
+            boolean        isKey = Arrays.equals (attrs, key);
+            SecondaryIndex si    = secIndex.get (r.attr);
+            if (isKey && (isClustered () || usePrimary () && isOrdered (index)) || si != null && isOrdered (si.entries ())) {
+                return rangeRows (attrs, bound (r.lo), r.isInclLo, bound (r.hi), r.isInclHi);
+            } // if
+        } // for
+        return null;
+    } // indexRows
+
+    /************************************************************************************
+     * Determine whether block b may hold a tuple satisfying all the equality, IN list
+     * and range conjuncts of a predicate, according to the zone maps.
+     */
+    private boolean mayMatch (ZoneMap zm, int b, List <Pred> conj)
+    {
+        for (Pred p : conj) {
+            if (p instanceof Pred.Range) {
+                Pred.Range r = (Pred.Range) p;
+                if (! zm.mayMatch (b, col (r.attr), r.lo, r.isInclLo, r.hi, r.isInclHi)) return false;
+                continue;
+            } // if
+            Comparable [] vals = valuesOf (p);
+            if (vals == null) continue;
+            int     c   = col (attrOf (p));
+            boolean any = false;
+            for (int k = 0; k < vals.length && ! any; k++) any = zm.mayMatch (b, c, vals [k], true, vals [k], true);
+            if (! any) return false;
+        } // for
+        return true;
+    } // mayMatch
+
+    /************************************************************************************
+     * Return the attribute that an equality, IN list or range predicate compares (or
+     * null for other predicates).
+     */
+    private static String attrOf (Pred p)
+    {
+        if (p instanceof Pred.Eq)    return ((Pred.Eq) p).attr;
+        if (p instanceof Pred.In)    return ((Pred.In) p).attr;
+        if (p instanceof Pred.Range) return ((Pred.Range) p).attr;
+        return null;
+    } // attrOf
+
+    /************************************************************************************
+     * Return the distinct values that an equality or IN list predicate accepts (or null
+     * for other predicates).
+     */
+    private static Comparable [] valuesOf (Pred p)
+    {
+        if (p instanceof Pred.Eq) return new Comparable [] { ((Pred.Eq) p).value };
+        if (p instanceof Pred.In) return new LinkedHashSet <> (Arrays.asList (((Pred.In) p).values)).toArray (new Comparable [0]);
+        return null;
+    } // valuesOf
+
+    /************************************************************************************
+     * Estimate the fraction of tuples whose value in column c lies between lo and hi
+     * (a null bound means unbounded) by interpolating within the column's minimum and
+     * maximum, or using DEFAULT_SEL for non-numeric values.
+     */
+    private static double selectivity (ZoneMap zm, int c, Comparable lo, Comparable hi)
+    {
+        Comparable min = zm.min (c), max = zm.max (c);
+        if (min == null) return 0.0;
+        if (lo == null && hi == null) return 1.0;
+        if (! (min instanceof Number) || lo != null && ! (lo instanceof Number)
+                                      || hi != null && ! (hi instanceof Number)) return DEFAULT_SEL;
+        double mn = ((Number) min).doubleValue (), mx = ((Number) max).doubleValue ();
+        double a  = (lo == null) ? mn : Math.max (mn, ((Number) lo).doubleValue ());
+        double b  = (hi == null) ? mx : Math.min (mx, ((Number) hi).doubleValue ());
+        if (b < a) return 0.0;
+        return (mx == mn) ? 1.0 : (b - a) / (mx - mn);
+    } // selectivity
+
+    /************************************************************************************
+     * Determine whether the primary index can answer lookups: it holds the tuples and
+     * is not left stale by a bulk load.
+     */
+    private boolean usePrimary ()
+    {
+        return indexed && ! deferIndex;
+    } // usePrimary
+
+    /************************************************************************************
+     * Determine whether the tuples are stored in primary key order, checking once and
+     * afterwards relying on insert to keep the answer up to date.
+     */
+    private boolean isClustered ()
+    {
+        if (clustered == null) {
+            int [] cols = match (key);
+            clustered = TRUE;
+            for (int i = 1; i < tuples.size () && clustered; i++) {
+                clustered = compareKey (tuples.get (i - 1), cols, KeyType.of (extract (tuples.get (i), cols))) <= 0;
+            } // for
+        } // if
+        return clustered;
+    } // isClustered
+
+    /************************************************************************************
+     * Return the position of the first tuple (in a clustered table) whose key in the
+     * given columns is after the lower bound lo (0 if lo is null).
+     */
+    private int lowerBound (int [] cols, KeyType lo, boolean isInclLo)
+    {
+        if (lo == null) return 0;
+        int l = 0, h = tuples.size ();
+        while (l < h) {
+            int m   = (l + h) >>> 1;
+            int cmp = compareKey (tuples.get (m), cols, lo);
+            if (cmp < 0 || cmp == 0 && ! isInclLo) l = m + 1; else h = m;
+        } // while
+        return l;
+    } // lowerBound
+
+    /************************************************************************************
+     * Determine whether the values of tuple tup in the given columns lie between lo and
+     * hi (a null bound means unbounded).  Tuples with a null value never match.
+     */
+    private static boolean inRange (Comparable [] tup, int [] cols, KeyType lo, boolean isInclLo,
+                                    KeyType hi, boolean isInclHi)
+    {
+        for (int c : cols) if (tup [c] == null) return false;
+        if (lo != null) {
+            int cmp = compareKey (tup, cols, lo);
+            if (cmp < 0 || cmp == 0 && ! isInclLo) return false;
+        } // if
+        if (hi != null) {
+            int cmp = compareKey (tup, cols, hi);
+            if (cmp > 0 || cmp == 0 && ! isInclHi) return false;
+        } // if
+        return true;
+    } // inRange
+
+    /************************************************************************************
+     * Compare the values of tuple tup in the given columns with the key k, attribute by
+     * attribute.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compareKey (Comparable [] tup, int [] cols, KeyType k)
+    {
+        for (int j = 0; j < cols.length; j++) {
+            int cmp = tup [cols [j]].compareTo (k.get (j));
+            if (cmp != 0) return cmp;
+        } // for
+        return 0;
+    } // compareKey
+
+    /************************************************************************************
+     * Return the range bound for a single attribute value (null for unbounded).
+     */
+    private static KeyType bound (Comparable v)
+    {
+        return (v == null) ? null : KeyType.of (v);
+    } // bound
+
+    /************************************************************************************
+     * Determine whether the given index map keeps its keys in order.
+     */
+    private static boolean isOrdered (Map <KeyType, ?> map)
+    {
+        return map instanceof OrderedIndex || map instanceof NavigableMap;
+    } // isOrdered
+
+    /************************************************************************************
+     * Visit, in key order, the entries of an ordered index map whose keys lie between lo
+     * and hi (a null bound means unbounded): an OrderedIndex uses its native range
+     * iteration and a TreeMap its navigable views.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> void orderedRange (Map <KeyType, V> map, KeyType lo, boolean isInclLo,
+                                          KeyType hi, boolean isInclHi, BiConsumer <KeyType, V> action)
+    {
+        if (map instanceof OrderedIndex) {
+            ((OrderedIndex <KeyType, V>) map).range (lo, isInclLo, hi, isInclHi, action);
+            return;
+        } // if
+        if (lo != null && hi != null) {                         // empty range (the views reject it)
+            int cmp = lo.compareTo (hi);
+            if (cmp > 0 || cmp == 0 && ! (isInclLo && isInclHi)) return;
+        } // if
+        NavigableMap <KeyType, V> m = (NavigableMap <KeyType, V>) map;
+        if (lo != null) m = m.tailMap (lo, isInclLo);
+        if (hi != null) m = m.headMap (hi, isInclHi);
+        m.forEach (action);
+    } // orderedRange
+
+    /************************************************************************************
+     * Build a Bloom filter on the given attributes from the current tuples.
+     *
+     * @param attributes  the attributes to build the filter on
+     * @param capacity    the number of keys to size the filter for
+     * @return  the Bloom filter
+     */
+    private BloomFilter buildFilter (String attributes, int capacity, List <Comparable []> rows)
+    {
+        BloomFilter bf   = new BloomFilter (capacity);
+        int []      cols = match (attributes.split (" "));
+        for (Comparable [] tup : rows) bf.add (KeyType.of (extract (tup, cols)));
+        return bf;
+    } // buildFilter
+
+    /************************************************************************************
+     * Determine whether any of the given attributes has a bitmap index.
+     *
+     * @param attrs  the attribute names
+     * @return  whether a bitmap index exists on at least one of them
+     */
+    private boolean hasBitmap (String [] attrs)
+    {
+        for (String a : attrs) if (bitmapIndex.containsKey (a)) return true;
+        return false;
+    } // hasBitmap
+
+    /************************************************************************************
+     * Determine whether the attributes at the given column positions can all be encoded
+     * as normalized keys.
+     *
+     * @param cols  the column positions
+     * @return  whether all their domains are supported by KeyEncoder
+     */
+    private boolean encodable (int [] cols)
+    {
+        for (int j : cols) if (! KeyEncoder.supports (domain [j])) return false;
+        return true;
+    } // encodable
+
     /************************************************************************************
      * Determine whether the two tables (this and table2) are compatible, i.e., have
      * the same number of attributes each with the same corresponding domain.
@@ -840,6 +2481,20 @@ public class Table
         return tup;
     } // extract
 
+    /************************************************************************************
+     * Extract the attributes at the given column positions from tuple t.
+     *
+     * @param t       the tuple to extract from
+     * @param colPos  the column positions to extract
+     * @return  a smaller tuple extracted from tuple t
+     */
+    private static Comparable [] extract (Comparable [] t, int [] colPos)
+    {
+        Comparable [] tup = new Comparable [colPos.length];
+        for (int j = 0; j < colPos.length; j++) tup [j] = t [colPos [j]];
+        return tup;
+    } // extract
+
     /************************************************************************************
      * Check the size of the tuple (number of elements in list) as well as the type of
      * each value to ensure it is from the right domain.
@@ -899,6 +2554,506 @@ public class Table
 
         return obj;
     } // extractDom
+
+    /************************************************************************************
+     * Check whether two lists hold the same tuples, in any order (duplicates count).
+     * Used by main to compare each access path with a scan.
+     *
+     * @param rows      the tuples to check
+     * @param expected  the expected tuples
+     * @return  whether the lists hold the same tuples
+     */
+    private static boolean sameRows (List <Comparable []> rows, List <Comparable []> expected)
+    {
+        List <String> a = new ArrayList <> (), b = new ArrayList <> ();
+        for (Comparable [] tup : rows) a.add (Arrays.toString (tup));
+        for (Comparable [] tup : expected) b.add (Arrays.toString (tup));
+        Collections.sort (a);
+        Collections.sort (b);
+        return a.equals (b);
+    } // sameRows
+
+    /************************************************************************************
+     * Join the tuples of t and u on attributes1 = attributes2 by comparing every pair.
+     * Used by main as the reference for the join algorithms.
+     *
+     * @param t            the lhs table
+     * @param attributes1  the attributes of t to be compared
+     * @param u            the rhs table
+     * @param attributes2  the attributes of u to be compared
+     * @return  the joined tuples
+     */
+    private static List <Comparable []> nestedLoopJoin (Table t, String attributes1, Table u, String attributes2)
+    {
+        int []               c1   = t.match (attributes1.split (" "));
+        int []               c2   = u.match (attributes2.split (" "));
+        List <Comparable []> rows = new ArrayList <> ();
+        for (Comparable [] t1 : t.tuples) {
+            for (Comparable [] t2 : u.tuples) {
+                if (compareCols (t1, c1, t2, c2) == 0) rows.add (ArrayUtil.concat (t1, t2));
+            } // for
+        } // for
+        return rows;
+    } // nestedLoopJoin
+
+    /************************************************************************************
+     * Compute the union, difference or intersection of the tuples t1 and t2 by searching
+     * t2 for each tuple of t1.  Used by main as the reference for the set operations.
+     *
+     * @param t1     the lhs tuples
+     * @param t2     the rhs tuples
+     * @param op     the operation (UNION, MINUS or INTERSECT)
+     * @param isBag  whether to use bag (rather than set) semantics
+     * @return  the resulting tuples
+     */
+    private static List <Comparable []> nestedLoopSetOp (List <Comparable []> t1, List <Comparable []> t2, int op,
+                                                         boolean isBag)
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+        List <Comparable []> rest = new ArrayList <> (t2);      // tuples of t2 not yet matched (bag)
+        List <Comparable []> all  = (op == UNION) ? new ArrayList <> (t1) : t1;
+        if (op == UNION) all.addAll (t2);
+        for (Comparable [] tup : all) {
+            boolean in = op == UNION;
+            if (op != UNION) {
+                List <Comparable []> from = isBag ? rest : t2;
+                for (int j = 0; j < from.size () && ! in; j++) {
+                    if (Arrays.equals (tup, from.get (j))) {
+                        in = true;
+                        if (isBag) rest.remove (j);
+                    } // if
+                } // for
+            } // if
+            if (in != (op != MINUS)) continue;
+            boolean dup = false;
+            for (int j = 0; j < rows.size () && ! isBag && ! dup; j++) dup = Arrays.equals (tup, rows.get (j));
+            if (! dup) rows.add (tup);
+        } // for
+        return rows;
+    } // nestedLoopSetOp
+
+    /************************************************************************************
+     * Check whether two lists hold tuples with the same values of the given columns in
+     * the same order.  Used by main to check ordered results (ties may come in any
+     * order).
+     *
+     * @param rows      the tuples to check
+     * @param expected  the expected tuples, in order
+     * @param cols      the columns that fix the order
+     * @return  whether the lists agree on the columns, position by position
+     */
+    private static boolean sameOrder (List <Comparable []> rows, List <Comparable []> expected, int [] cols)
+    {
+        if (rows.size () != expected.size ()) return false;
+        for (int i = 0; i < rows.size (); i++) {
+            if (compareCols (rows.get (i), cols, expected.get (i), cols) != 0) return false;
+        } // for
+        return true;
+    } // sameOrder
+
+    /*************************************************************************************
+     * The main method is used for testing purposes only: it checks that the operators
+     * give the same answers whichever access path they take.
+     * @param args  the command-line arguments
+     */
+    public static void main (String [] args)
+    {
+        out.println ();
+        out.println ("Selections and joins in the middle of a bulk load");
+        Table t = new Table ("bulkT", "id v", "Integer Integer", "id", "BpTreeMap");
+        Table u = new Table ("bulkU", "id w", "Integer Integer", "id", "BpTreeMap");
+        for (int i = 0; i < 10; i++) {
+            t.insert (new Comparable [] { i, i % 3 });
+            u.insert (new Comparable [] { i, i });
+        } // for
+        t.createBloomFilter ("id");
+        u.createBloomFilter ("id");
+        u.createIndex ("w", "TreeMap");
+        t.select (Pred.range ("v", 2, true, null, false));      // builds the zone maps
+        t.beginBulkLoad ();
+        u.beginBulkLoad ();
+        for (int i = 10; i < 20; i++) {
+            t.insert (new Comparable [] { i, i % 3 });
+            u.insert (new Comparable [] { i, i });
+        } // for
+        Table one = new Table ("bulkOne", "id", "Integer", "id", "BpTreeMap");
+        one.insert (new Comparable [] { 15 });
+        out.println ("select (15) finds 1 tuple: " + (t.select (KeyType.of (15)).tuples.size () == 1));
+        out.println ("join on a secondary index gives 20 tuples: " + (t.join ("id", "w", u).tuples.size () == 20));
+        out.println ("semiJoin finds 1 tuple: " + (one.semiJoin ("id", "id", u).tuples.size () == 1));
+        out.println ("select (v >= 2) finds 6 tuples: " + (t.select (Pred.range ("v", 2, true, null, false)).tuples.size () == 6));
+        t.endBulkLoad ();
+        u.endBulkLoad ();
+        out.println ("select (15) after the load finds 1 tuple: " + (t.select (KeyType.of (15)).tuples.size () == 1));
+
+        out.println ();
+        out.println ("Selections on part of a composite key with a key Bloom filter");
+        Table pk = new Table ("pairKey", "a b", "Integer Integer", "a b", "BpTreeMap");
+        for (int i = 0; i < 100; i++) pk.insert (new Comparable [] { i / 10, i % 10 });
+        pk.createBloomFilter ("a b");
+        out.println ("select (3) finds 10 tuples: " + (pk.select (KeyType.of (3)).tuples.size () == 10));
+        out.println ("select (3, 4) finds 1 tuple: " + (pk.select (KeyType.of (3, 4)).tuples.size () == 1));
+        out.println ("select (3, 40) is ruled out by the filter: " + pk.select (KeyType.of (3, 40)).tuples.isEmpty ());
+
+        for (String map : new String [] { "TreeMap", "BpTreeMap", "LinHashMap", "ExtHashMap", "ArtMap", "LearnedMap" }) {
+            out.println ();
+            out.println ("Operations on derived (unindexed) tables using " + map);
+            Table s = new Table ("baseS", "id v", "Integer Integer", "id", map);
+            Table r = new Table ("baseR", "id w", "Integer Integer", "id", map);
+            for (int i = 0; i < 200; i++) {
+                s.insert (new Comparable [] { (i * 37) % 200, i % 10 });
+                r.insert (new Comparable [] { (i * 53) % 200, i });
+            } // for
+            Table ds = s.select (tup -> true), dr = r.select (tup -> true);
+            out.println ("select (5) finds 1 tuple: " + (ds.select (KeyType.of (5)).tuples.size () == 1));
+            out.println ("select (id, 5) finds 1 tuple: " + (ds.select ("id", KeyType.of (5)).tuples.size () == 1));
+            out.println ("rangeSelect [10, 19] finds 10 tuples: "
+                       + (ds.rangeSelect (KeyType.of (10), true, KeyType.of (19), true).tuples.size () == 10));
+            out.println ("join gives 200 tuples: " + (ds.join ("id", "id", dr).tuples.size () == 200));
+            out.println ("indexedJoin gives 200 tuples: " + (s.indexedJoin ("id", "id", dr).tuples.size () == 200
+                                                          && ds.indexedJoin ("id", "id", r).tuples.size () == 200));
+            out.println ("select (Pred) finds 1 and 2 tuples: " + (ds.select (Pred.eq ("id", 5)).tuples.size () == 1
+                                                                && ds.select (Pred.in ("id", 5, 6)).tuples.size () == 2));
+        } // for
+
+        out.println ();
+        out.println ("Joins of tables with an attribute name in common");
+        Table ta = new Table ("nameA", "id v", "Integer Integer", "id", "TreeMap");
+        Table tb = new Table ("nameB", "id v", "Integer Integer", "id", "TreeMap");
+        for (int i = 0; i < 50; i++) {
+            ta.insert (new Comparable [] { i, i % 5 });
+            tb.insert (new Comparable [] { 2 * i, i });
+        } // for
+        Table hj = ta.hashJoin ("id", "id", tb);
+        out.println ("hashJoin renames id and v of nameB: " + (hj.col ("id2") == 2 && hj.col ("v2") == 3));
+        out.println ("hashJoin gives 25 tuples: " + (hj.tuples.size () == 25));
+        Table mj = ta.mergeJoin ("id", "id", tb);
+        out.println ("mergeJoin renames id and v of nameB: " + (mj.col ("id2") == 2 && mj.col ("v2") == 3));
+        out.println ("mergeJoin gives 25 tuples: " + (mj.tuples.size () == 25));
+
+        out.println ();
+        out.println ("Bitmap indexes against a scan");
+        Table bm = new Table ("bitmapT", "id color size flag", "Integer String Integer String", "id", "TreeMap");
+        for (int i = 0; i < 70000; i++) bm.insert (new Comparable [] { i, "c" + i % 7, i % 50, (i % 2 == 0) ? "y" : "n" });
+        for (String attr : new String [] { "color", "size", "flag" }) bm.createIndex (attr, "BitmapIndex");
+        Table bmOne = bm.select ("color", KeyType.of ("c3"));
+        out.println ("select (color) uses the bitmap: " + bm.getAccessPath ().equals ("bitmap"));
+        out.println ("select (color) matches a scan: "
+                   + sameRows (bmOne.tuples, bm.select (tup -> tup [1].equals ("c3")).tuples));
+        Table bmTwo = bm.select ("color size flag", KeyType.of ("c3", 17, "n"));
+        out.println ("select (color size flag) matches a scan: " + sameRows (bmTwo.tuples,
+                     bm.select (tup -> tup [1].equals ("c3") && tup [2].equals (17) && tup [3].equals ("n")).tuples));
+        out.println ("select (color id) matches a scan: " + sameRows (bm.select ("color id", KeyType.of ("c3", 66)).tuples,
+                     bm.select (tup -> tup [0].equals (66)).tuples));
+
+        out.println ();
+        out.println ("Bloom filters against a scan");
+        Table bl = new Table ("bloomT", "id name", "Integer String", "id", "LinHashMap");
+        Table bq = new Table ("bloomQ", "qid ref", "Integer Integer", "qid", "LinHashMap");
+        for (int i = 0; i < 2000; i++) {
+            bl.insert (new Comparable [] { 2 * i, "n" + i % 100 });
+            bq.insert (new Comparable [] { i, 3 * i });
+        } // for
+        bl.createBloomFilter ("id");
+        bl.createBloomFilter ("name");
+        out.println ("select (name) of a missing value is ruled out: "
+                   + (bl.select ("name", KeyType.of ("none")).tuples.isEmpty () && bl.getAccessPath ().equals ("bloom filter")));
+        out.println ("select (name) matches a scan: " + sameRows (bl.select ("name", KeyType.of ("n42")).tuples,
+                     bl.select (tup -> tup [1].equals ("n42")).tuples));
+        out.println ("select (key) finds 1 tuple, and none for an odd key: "
+                   + (bl.select (KeyType.of (84)).tuples.size () == 1 && bl.select (KeyType.of (85)).tuples.isEmpty ()));
+        out.println ("semiJoin matches a scan: " + sameRows (bq.semiJoin ("ref", "id", bl).tuples,
+                     bq.select (tup -> (Integer) tup [1] % 2 == 0 && (Integer) tup [1] < 4000).tuples));
+
+        out.println ();
+        out.println ("Zone-map pruned scans against a full scan");
+        Table zt  = new Table ("zoneT", "id ts v", "Integer Integer Integer", "id", "TreeMap");
+        Random rng = new Random (7);
+        for (int i = 0; i < 5000; i++) zt.insert (new Comparable [] { i, 10 * i, rng.nextInt (1000) });
+        Table zr = zt.rangeSelect ("ts", 10000, true, 15000, false);
+        out.println ("rangeSelect (ts) prunes blocks: " + zt.getAccessPath ().equals ("scan (zone maps)"));
+        out.println ("rangeSelect (ts) matches a scan: " + sameRows (zr.tuples,
+                     zt.select (tup -> (Integer) tup [1] >= 10000 && (Integer) tup [1] < 15000).tuples));
+        out.println ("rangeSelect (v) matches a scan: " + sameRows (zt.rangeSelect ("v", null, false, 100, true).tuples,
+                     zt.select (tup -> (Integer) tup [2] <= 100).tuples));
+        boolean cmpOk = true;
+        for (String op : new String [] { "==", "!=", "<", "<=", ">", ">=" }) {
+            int c = 20000;
+            Predicate <Comparable []> p;
+            switch (op) {
+            case "==": p = tup -> (Integer) tup [1] == c; break;
+            case "!=": p = tup -> (Integer) tup [1] != c; break;
+            case "<":  p = tup -> (Integer) tup [1] <  c; break;
+            case "<=": p = tup -> (Integer) tup [1] <= c; break;
+            case ">":  p = tup -> (Integer) tup [1] >  c; break;
+            default:   p = tup -> (Integer) tup [1] >= c;
+            } // switch
+            cmpOk &= sameRows (zt.select ("ts", op, c).tuples, zt.select (p).tuples);
+        } // for
+        out.println ("select (ts op value) matches a scan for every operator: " + cmpOk);
+
+        out.println ();
+        out.println ("An adaptive primary index against a scan as the workload shifts");
+        Table ad = new Table ("adaptT", "id v", "Integer Integer", "id", "Adaptive");
+        for (int i = 0; i < 3000; i++) ad.insert (new Comparable [] { (i * 1237) % 3000, i });
+        boolean adOk = true;
+        for (int i = 0; i < 300; i++) {
+            int lo = (i * 7) % 2900;
+            adOk &= sameRows (ad.rangeSelect (KeyType.of (lo), true, KeyType.of (lo + 50), false).tuples,
+                              ad.select (tup -> (Integer) tup [0] >= lo && (Integer) tup [0] < lo + 50).tuples);
+        } // for
+        out.println ("range selects match a scan: " + adOk);
+        out.println ("range selects move the index to a BpTreeMap: " + (ad.index instanceof BpTreeMap));
+        adOk = true;
+        for (int i = 0; i < 3000; i++) {
+            Comparable [] tup = ad.select (KeyType.of (i)).tuples.get (0);
+            adOk &= tup [0].equals (i) && (Integer) tup [1] * 1237 % 3000 == i;
+        } // for
+        out.println ("point selects find every tuple: " + adOk);
+        out.println ("point selects move the index back to a LinHashMap: " + (ad.index instanceof LinHashMap));
+
+        out.println ();
+        out.println ("Covering indexes against select and project");
+        Table cv = new Table ("coverT", "id dept name sal", "Integer String String Integer", "id", "TreeMap");
+        for (int i = 0; i < 2000; i++) cv.insert (new Comparable [] { i, "d" + i % 20, "e" + i % 300, i % 37 });
+        cv.createIndex ("dept", "BpTreeMap", "name sal");
+        for (int i = 2000; i < 3000; i++) cv.insert (new Comparable [] { i, "d" + i % 20, "e" + i % 300, i % 37 });
+        Table cvKey = cv.select ("dept", KeyType.of ("d3"));
+        out.println ("index-only selectProject (dept name sal) matches select and project: "
+                   + sameRows (cv.selectProject ("dept", KeyType.of ("d3"), "dept name sal").tuples,
+                               cvKey.project ("dept name sal").tuples));
+        out.println ("index-only selectProject (name) eliminates duplicates like project: "
+                   + sameRows (cv.selectProject ("dept", KeyType.of ("d3"), "name").tuples, cvKey.project ("name").tuples));
+        out.println ("selectProject (id name), not covered, matches select and project: "
+                   + sameRows (cv.selectProject ("dept", KeyType.of ("d3"), "id name").tuples, cvKey.project ("id name").tuples));
+
+        out.println ();
+        out.println ("Indexes saved to and loaded from index files");
+        new File (DIR).mkdirs ();
+        for (String map : new String [] { "TreeMap", "BpTreeMap", "LinHashMap", "ExtHashMap", "ArtMap", "LearnedMap" }) {
+            Table sv = new Table ("saveT" + map, "id dept", "Integer String", "id", map);
+            for (int i = 0; i < 3000; i++) sv.insert (new Comparable [] { (i * 7) % 3000, "d" + i % 30 });
+            sv.createIndex ("dept", "TreeMap");
+            sv.save ();
+            Table ld = load (sv.name);
+            boolean svOk = ld.index.getClass () == sv.index.getClass ();
+            for (int i = 0; i < 3000; i += 13) svOk &= sameRows (ld.select (KeyType.of (i)).tuples, sv.select (KeyType.of (i)).tuples);
+            svOk &= sameRows (ld.select ("dept", KeyType.of ("d7")).tuples, sv.select (tup -> tup [1].equals ("d7")).tuples)
+                 && ld.getAccessPath ().equals ("secondary index");
+            out.println (map + " indexes load from their files and match: " + svOk);
+            try {
+                Files.write (Paths.get (sv.indexPath ("pk")), new byte [] { 1, 2, 3 });
+            } catch (IOException ex) {
+                out.println ("main: IO Exception");
+            } // try
+            ld = load (sv.name);
+            out.println (map + " primary index is rebuilt from a corrupt file: "
+                       + sameRows (ld.select (KeyType.of (77)).tuples, sv.select (KeyType.of (77)).tuples));
+        } // for
+
+        out.println ();
+        out.println ("Range selections over every index type against a scan");
+        for (String map : new String [] { "TreeMap", "BpTreeMap", "LinHashMap", "ExtHashMap", "ArtMap", "LearnedMap" }) {
+            Table rs = new Table ("rangeT" + map, "id v", "Integer Integer", "id", map);
+            for (int i = 0; i < 4000; i++) rs.insert (new Comparable [] { (i * 1237) % 4000, i % 500 });
+            rs.createIndex ("v", map);
+            boolean       rsOk  = true;
+            Set <String>  paths = new TreeSet <> ();
+            for (int w : new int [] { 0, 5, 40, 3000 }) {
+                int lo = 300;
+                rsOk &= sameRows (rs.rangeSelect (KeyType.of (lo), true, KeyType.of (lo + w), false).tuples,
+                                  rs.select (tup -> (Integer) tup [0] >= lo && (Integer) tup [0] < lo + w).tuples);
+                paths.add (rs.getAccessPath ());
+                rsOk &= sameRows (rs.rangeSelect (KeyType.of (lo), false, KeyType.of (lo + w), true).tuples,
+                                  rs.select (tup -> (Integer) tup [0] > lo && (Integer) tup [0] <= lo + w).tuples);
+                rsOk &= sameRows (rs.rangeSelect ("v", lo / 10, true, lo / 10 + w / 10, true).tuples,
+                                  rs.select (tup -> (Integer) tup [1] >= lo / 10 && (Integer) tup [1] <= lo / 10 + w / 10).tuples);
+                paths.add (rs.getAccessPath ());
+            } // for
+            rsOk &= sameRows (rs.rangeSelect (null, false, KeyType.of (10), false).tuples,
+                              rs.select (tup -> (Integer) tup [0] < 10).tuples);
+            out.println (map + " range selects (" + String.join (", ", paths) + ") match a scan: " + rsOk);
+        } // for
+
+        out.println ();
+        out.println ("Hash joins against a nested-loop join");
+        Table jl = new Table ("joinL", "id a b", "Integer Integer String", "id", "TreeMap");
+        Table jr = new Table ("joinR", "rid a b", "Integer Integer String", "rid", "TreeMap");
+        for (int i = 0; i < 600; i++) jl.insert (new Comparable [] { i, i % 40, "s" + i % 3 });
+        for (int i = 0; i < 150; i++) jr.insert (new Comparable [] { i, i % 60, "s" + i % 2 });
+        out.println ("hashJoin (a) matches: " + sameRows (jl.hashJoin ("a", "a", jr).tuples, nestedLoopJoin (jl, "a", jr, "a")));
+        out.println ("hashJoin with the larger table on the right matches: "
+                   + sameRows (jr.hashJoin ("a", "a", jl).tuples, nestedLoopJoin (jr, "a", jl, "a")));
+        out.println ("hashJoin (a b) matches: "
+                   + sameRows (jl.hashJoin ("a b", "a b", jr).tuples, nestedLoopJoin (jl, "a b", jr, "a b")));
+        out.println ("join (a) matches: " + sameRows (jl.join ("a", "a", jr).tuples, nestedLoopJoin (jl, "a", jr, "a")));
+
+        out.println ();
+        out.println ("Merge joins against a nested-loop join");
+        out.println ("mergeJoin (id) of clustered tables matches: "
+                   + sameRows (jl.mergeJoin ("id", "rid", jr).tuples, nestedLoopJoin (jl, "id", jr, "rid")));
+        out.println ("mergeJoin (a) of unsorted tables matches: "
+                   + sameRows (jl.mergeJoin ("a", "a", jr).tuples, nestedLoopJoin (jl, "a", jr, "a")));
+        out.println ("mergeJoin (a b) matches: "
+                   + sameRows (jl.mergeJoin ("a b", "a b", jr).tuples, nestedLoopJoin (jl, "a b", jr, "a b")));
+        Table jo = new Table ("joinO", "id a b", "Integer Integer String", "id", "BpTreeMap");
+        for (int i = 0; i < 600; i++) jo.insert (new Comparable [] { (i * 7) % 600, i % 40, "s" + i % 3 });
+        out.println ("mergeJoin through an ordered index matches: "
+                   + sameRows (jo.mergeJoin ("id", "rid", jr).tuples, nestedLoopJoin (jo, "id", jr, "rid")));
+        int memory = memoryTuples;
+        memoryTuples = 64;
+        out.println ("mergeJoin with spilled sort runs matches: "
+                   + sameRows (jl.mergeJoin ("a", "a", jr).tuples, nestedLoopJoin (jl, "a", jr, "a")));
+        memoryTuples = memory;
+
+        out.println ();
+        out.println ("Natural joins against a nested-loop join");
+        List <Comparable []> natural = new ArrayList <> ();
+        for (Comparable [] t1 : nestedLoopJoin (jl, "a b", jr, "a b")) natural.add (Arrays.copyOf (t1, 4));
+        Table nj = jl.join (jr);
+        out.println ("join (joinR) drops the common attributes of joinR: "
+                   + Arrays.equals (nj.attribute, new String [] { "id", "a", "b", "rid" }));
+        out.println ("join (joinR) matches: " + sameRows (nj.tuples, natural));
+        Table np = new Table ("joinP", "p", "Integer", "p", "TreeMap");
+        for (int i = 0; i < 3; i++) np.insert (new Comparable [] { i });
+        out.println ("join without common attributes gives the product: " + (jr.join (np).tuples.size () == 3 * 150));
+
+        out.println ();
+        out.println ("Hash joins spilled to disk against a nested-loop join");
+        Table sk = new Table ("skewT", "id a", "Integer Integer", "id", "TreeMap");
+        for (int i = 0; i < 500; i++) sk.insert (new Comparable [] { i, (i < 200) ? 0 : i % 97 });
+        memory = memoryTuples;
+        memoryTuples = 16;
+        out.println ("spilled hashJoin (a) matches: " + sameRows (jl.hashJoin ("a", "a", jr).tuples, nestedLoopJoin (jl, "a", jr, "a")));
+        out.println ("spilled hashJoin (a b) matches: "
+                   + sameRows (jl.hashJoin ("a b", "a b", jr).tuples, nestedLoopJoin (jl, "a b", jr, "a b")));
+        out.println ("spilled hashJoin on a skewed key matches: "
+                   + sameRows (sk.hashJoin ("a", "a", jl).tuples, nestedLoopJoin (sk, "a", jl, "a")));
+        out.println ("spilled natural join matches: " + sameRows (jl.join (jr).tuples, natural));
+        memoryTuples = memory;
+
+        out.println ();
+        out.println ("Index nested-loop joins against a nested-loop join");
+        for (String map : new String [] { "TreeMap", "BpTreeMap", "LinHashMap", "ExtHashMap", "ArtMap", "LearnedMap" }) {
+            Table io = new Table ("outerT" + map, "id a b", "Integer Integer Integer", "id", map);
+            Table ii = new Table ("innerT" + map, "k w", "Integer Integer", "k", map);
+            Table ic = new Table ("pairT" + map, "x y v", "Integer Integer Integer", "x y",
+                                  map.equals ("LearnedMap") ? "BpTreeMap" : map);   // learned keys are single numbers
+            for (int i = 0; i < 1500; i++) io.insert (new Comparable [] { i, (i * 13) % 400, i % 20 });
+            for (int i = 0; i < 300; i++) {
+                ii.insert (new Comparable [] { (i * 7) % 300, i % 25 });
+                ic.insert (new Comparable [] { i % 20, i / 20, i });
+            } // for
+            ii.createIndex ("w", map);
+            boolean ijOk = sameRows (io.indexedJoin ("a", "k", ii).tuples, nestedLoopJoin (io, "a", ii, "k"))
+                        && sameRows (io.indexedJoin ("b", "w", ii).tuples, nestedLoopJoin (io, "b", ii, "w"))
+                        && sameRows (ii.indexedJoin ("k", "a", io).tuples, nestedLoopJoin (ii, "k", io, "a"))
+                        && sameRows (io.indexedJoin ("a b", "y x", ic).tuples, nestedLoopJoin (io, "a b", ic, "y x"));
+            out.println (map + " indexedJoin matches: " + ijOk);
+        } // for
+
+        out.println ();
+        out.println ("Set operations against a nested-loop reference");
+        Table [] so = new Table [4];
+        for (int j = 0; j < 4; j++) so [j] = new Table ("setT" + j, "id v", "Integer Integer", "id", "TreeMap");
+        for (int i = 0; i < 400; i++) {
+            so [0].insert (new Comparable [] { (i * 37) % 150, i % 3 });      // unclustered, with duplicates
+            so [1].insert (new Comparable [] { (i * 11) % 120 + 60, i % 2 });
+            so [2].insert (new Comparable [] { i / 3, i % 3 / 2 });            // clustered on id
+            so [3].insert (new Comparable [] { i / 2 + 50, i % 2 });
+        } // for
+        for (int j = 0; j < 4; j += 2) {
+            boolean soOk = true;
+            for (int op : new int [] { UNION, MINUS, INTERSECT }) {
+                for (boolean isBag : new boolean [] { false, true }) {
+                    Table r = (op == UNION) ? so [j].union (so [j + 1], isBag)
+                            : (op == MINUS) ? so [j].minus (so [j + 1], isBag) : so [j].intersect (so [j + 1], isBag);
+                    soOk &= sameRows (r.tuples, nestedLoopSetOp (so [j].tuples, so [j + 1].tuples, op, isBag));
+                } // for
+            } // for
+            out.println (((j == 0) ? "hashed" : "merged") + " union, minus and intersect match: " + soOk);
+            so [j + 1].createBloomFilter ("id");
+            out.println ("minus with a Bloom filter on setT" + (j + 1) + " matches: "
+                       + (sameRows (so [j].minus (so [j + 1]).tuples, nestedLoopSetOp (so [j].tuples, so [j + 1].tuples, MINUS, false))
+                       && sameRows (so [j].minus (so [j + 1], true).tuples, nestedLoopSetOp (so [j].tuples, so [j + 1].tuples, MINUS, true))));
+        } // for
+
+        out.println ();
+        out.println ("Projections against a reference");
+        List <Comparable []> bagAB = new ArrayList <> (), setAB = new ArrayList <> ();
+        Set <List <Comparable>> seenAB = new HashSet <> ();
+        for (Comparable [] tup : jl.tuples) {
+            Comparable [] ab = { tup [1], tup [2] };
+            bagAB.add (ab);
+            if (seenAB.add (Arrays.asList (ab))) setAB.add (ab);
+        } // for
+        out.println ("project (a b) eliminates duplicates: " + sameRows (jl.project ("a b").tuples, setAB));
+        out.println ("project (a b, bag) keeps them: " + sameRows (jl.project ("a b", true).tuples, bagAB));
+        out.println ("project (b id) keeps every tuple: " + (jl.project ("b id").tuples.size () == jl.tuples.size ()));
+        out.println ("project of duplicate tuples with the key removes them: "
+                   + sameRows (so [0].project ("id v").tuples, nestedLoopSetOp (so [0].tuples, so [0].tuples, UNION, false)));
+
+        out.println ();
+        out.println ("Predicate selections against a scan");
+        Table [] pt = { bm, zt, cv, cv, jl };
+        Pred  [] pp = { Pred.and (Pred.eq ("color", "c3"), Pred.in ("size", 4, 17, 30), Pred.eq ("flag", "n")),
+                        Pred.and (Pred.range ("ts", 10000, true, 12000, false), Pred.not (Pred.eq ("v", 5))),
+                        Pred.or (Pred.eq ("dept", "d3"), Pred.and (Pred.in ("dept", "d4", "d5"), Pred.range ("sal", 10, false, null, false))),
+                        Pred.and (Pred.in ("dept", "d4", "d5"), Pred.range ("sal", 10, false, null, false)),
+                        Pred.and (Pred.in ("id", 5, 17, 9999), Pred.range ("a", null, false, 17, true)) };
+        for (int j = 0; j < pt.length; j++) {
+            List <Comparable []> rows = pt [j].select (pp [j]).tuples;
+            out.println ("select (" + pp [j] + ") on " + pt [j].name + " by " + pt [j].getAccessPath () + " matches a scan: "
+                       + sameRows (rows, pt [j].select (pp [j].compile (pt [j])).tuples));
+        } // for
+        out.println ("a compiled predicate tests like a lambda: " + sameRows (cv.select (pp [2]).tuples,
+                     cv.select (tup -> tup [1].equals ("d3") || (tup [1].equals ("d4") || tup [1].equals ("d5")) && (Integer) tup [3] > 10).tuples));
+
+        out.println ();
+        out.println ("Grouping and aggregation against a reference");
+        Map <Comparable, Comparable []> groups = new HashMap <> ();  // dept -> count, sum, min, max of sal
+        for (Comparable [] tup : cv.tuples) {
+            Comparable [] g = groups.computeIfAbsent (tup [1], d -> new Comparable [] { 0L, 0L, tup [3], tup [3] });
+            g [0] = (Long) g [0] + 1;
+            g [1] = (Long) g [1] + (Integer) tup [3];
+            if (tup [3].compareTo (g [2]) < 0) g [2] = tup [3];
+            if (tup [3].compareTo (g [3]) > 0) g [3] = tup [3];
+        } // for
+        List <Comparable []> expected = new ArrayList <> ();
+        groups.forEach ((d, g) -> expected.add (new Comparable [] { d, g [0], g [1], g [2], g [3], (double) (Long) g [1] / (Long) g [0] }));
+        for (int mem : new int [] { memoryTuples, 8, 1 }) {
+            memory = memoryTuples;
+            memoryTuples = mem;
+            Table gb = cv.groupBy ("dept").aggregate ("count(*) sum(sal) min(sal) max(sal) avg(sal)");
+            memoryTuples = memory;
+            out.println ("groupBy (dept) with room for " + mem + " groups matches: " + sameRows (gb.tuples, expected));
+        } // for
+        Table none = new Table ("emptyT", "id v", "Integer Integer", "id", "TreeMap").aggregate ("", "count(*) sum(v)");
+        out.println ("aggregate of an empty table gives count 0: "
+                   + sameRows (none.tuples, Collections.singletonList (new Comparable [] { 0L, null })));
+
+        out.println ();
+        out.println ("Ordering and Top-N against a sorted copy");
+        int []               oc  = jl.match (new String [] { "b", "a" });
+        List <Comparable []> asc = new ArrayList <> (jl.tuples), desc = new ArrayList <> (jl.tuples);
+        asc.sort ((x, y) -> compareCols (x, oc, y, oc));
+        desc.sort ((x, y) -> compareCols (y, oc, x, oc));
+        for (int mem : new int [] { memoryTuples, 50 }) {
+            memory = memoryTuples;
+            memoryTuples = mem;
+            Table ob = jl.orderBy ("b a"), od = jl.orderBy ("b a", false);
+            out.println ("orderBy (b a) with room for " + mem + " tuples matches: "
+                       + (sameRows (ob.tuples, jl.tuples) && sameOrder (ob.tuples, asc, oc) && sameOrder (od.tuples, desc, oc)));
+            out.println ("orderBy (b a).limit (k) matches: "
+                       + (sameOrder (jl.orderBy ("b a").limit (25).tuples, asc.subList (0, 25), oc)
+                       && sameOrder (jl.orderBy ("b a", false).limit (1000).tuples, desc, oc)
+                       && sameOrder (ob.limit (25).tuples, asc.subList (0, 25), oc)));
+            memoryTuples = memory;
+        } // for
+        out.println ("limit (k) of an unordered table takes its first k tuples: "
+                   + jl.limit (10).tuples.equals (jl.tuples.subList (0, 10)));
+    } // main
+
 } // Table class
 
 
@@ -183,7 +183,7 @@ public class TestTupleGenerator
         	
         	Comparable firstVal = studentFirst.getRandomValue( "id" );
         	Comparable secondVal = studentFirst.getRandomValue( "id" );
-            if (firstVal > secondVal){
+            if (firstVal.compareTo(secondVal) > 0){
                 Comparable temp = firstVal;
                 firstVal = secondVal;
                 secondVal = temp;
@@ -0,0 +1,109 @@
+
+/****************************************************************************************
+ * @file  TupleSet.java
+ */
+
+/****************************************************************************************
+ * This class implements a set of (projected) tuples for duplicate elimination, using
+ * open addressing with linear probing over parallel arrays of tuples and their hash
+ * codes.  A tuple is tested against the set through the columns it is projected on, so
+ * the projected copy is only allocated when the tuple is new; duplicates cost no
+ * allocation at all.
+ */
+public class TupleSet
+{
+    /** The stored tuples (null marks an empty slot).
+     */
+    private Comparable [][] slots;
+
+    /** The hash code of the tuple in each slot.
+     */
+    private int [] hashes;
+
+    /** The number of tuples in the set.
+     */
+    private int n = 0;
+
+    /************************************************************************************
+     * Construct an empty tuple set sized for about the given number of tuples.
+     *
+     * @param expected  the expected number of tuples
+     */
+    public TupleSet (int expected)
+    {
+        int cap = 16;
+        while (cap < 2 * expected) cap <<= 1;
+        slots  = new Comparable [cap][];
+        hashes = new int [cap];
+    } // constructor
+
+    /************************************************************************************
+     * Add the projection of tuple tup on the given columns to the set, unless an equal
+     * tuple is already present.
+     *
+     * @param tup   the tuple to project
+     * @param cols  the columns to project on
+     * @return  the new projected tuple, or null if it was already in the set
+     */
+    public Comparable [] add (Comparable [] tup, int [] cols)
+    {
+        int h = 1;
+        for (int c : cols) h = 31 * h + (tup [c] == null ? 0 : tup [c].hashCode ());
+        h ^= h >>> 16;
+
+        int mask = slots.length - 1;
+        int i    = h & mask;
+        for ( ; slots [i] != null; i = (i + 1) & mask) {
+            if (hashes [i] == h && equal (slots [i], tup, cols)) return null;
+        } // for
+
+        Comparable [] proj = new Comparable [cols.length];
+        for (int j = 0; j < cols.length; j++) proj [j] = tup [cols [j]];
+        slots [i]  = proj;
+        hashes [i] = h;
+        if (++n > slots.length / 2) grow ();
+        return proj;
+    } // add
+
+    /************************************************************************************
+     * Return the number of tuples in the set.
+     *
+     * @return  the size of the set
+     */
+    public int size ()
+    {
+        return n;
+    } // size
+
+    /************************************************************************************
+     * Determine whether stored tuple s equals the projection of tuple tup on cols.
+     */
+    private static boolean equal (Comparable [] s, Comparable [] tup, int [] cols)
+    {
+        for (int j = 0; j < cols.length; j++) {
+            Comparable v = tup [cols [j]];
+            if (v == null ? s [j] != null : ! v.equals (s [j])) return false;
+        } // for
+        return true;
+    } // equal
+
+    /************************************************************************************
+     * Double the capacity of the table, reinserting the stored tuples.
+     */
+    private void grow ()
+    {
+        Comparable [][] oldSlots  = slots;
+        int []          oldHashes = hashes;
+        slots  = new Comparable [2 * oldSlots.length][];
+        hashes = new int [2 * oldSlots.length];
+        int mask = slots.length - 1;
+        for (int k = 0; k < oldSlots.length; k++) {
+            if (oldSlots [k] == null) continue;
+            int i = oldHashes [k] & mask;
+            while (slots [i] != null) i = (i + 1) & mask;
+            slots [i]  = oldSlots [k];
+            hashes [i] = oldHashes [k];
+        } // for
+    } // grow
+
+} // TupleSet class
@@ -0,0 +1,169 @@
+
+/****************************************************************************************
+ * @file  ZoneMap.java
+ */
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/****************************************************************************************
+ * This class provides zone maps: for each block of BLOCK consecutive tuples (row ids)
+ * and each column, the minimum and maximum (non-null) value and the number of nulls.
+ * A scan evaluating a range or comparison predicate can skip every block whose
+ * [min, max] interval cannot satisfy the predicate, without touching its tuples (or
+ * reading its records when the tuples are kept in a FileList).  This pays off when the
+ * column is ordered or clustered, e.g., ids assigned in load order.
+ */
+public class ZoneMap
+       implements Serializable
+{
+    /** The number of tuples per block.
+     */
+    public static final int BLOCK = 1024;
+
+    /** The number of columns.
+     */
+    private final int nCols;
+
+    /** The minimum value of each column in each block (null if all values are null).
+     */
+    private Comparable [][] min = new Comparable [4][];
+
+    /** The maximum value of each column in each block (null if all values are null).
+     */
+    private Comparable [][] max = new Comparable [4][];
+
+    /** The number of null values of each column in each block.
+     */
+    private int [][] nulls = new int [4][];
+
+    /** The number of blocks.
+     */
+    private int nBlocks = 0;
+
+    /************************************************************************************
+     * Construct an empty zone map for tuples with the given number of columns.
+     *
+     * @param _nCols  the number of columns
+     */
+    ZoneMap (int _nCols)
+    {
+        nCols = _nCols;
+    } // constructor
+
+    /************************************************************************************
+     * Add the given tuple (stored at row id rid) to the zone map.  Tuples must be added
+     * in row id order.
+     *
+     * @param tup  the tuple to add
+     * @param rid  the row id of the tuple
+     */
+    @SuppressWarnings("unchecked")
+    void add (Comparable [] tup, int rid)
+    {
+        int b = rid / BLOCK;
+        while (nBlocks <= b) {
+            if (nBlocks == min.length) {
+                min   = Arrays.copyOf (min, 2 * nBlocks);
+                max   = Arrays.copyOf (max, 2 * nBlocks);
+                nulls = Arrays.copyOf (nulls, 2 * nBlocks);
+            } // if
+            min [nBlocks]   = new Comparable [nCols];
+            max [nBlocks]   = new Comparable [nCols];
+            nulls [nBlocks] = new int [nCols];
+            nBlocks++;
+        } // while
+
+        for (int j = 0; j < nCols; j++) {
+            Comparable v = tup [j];
+            if (v == null) {
+                nulls [b][j]++;
+            } else {
+                if (min [b][j] == null || v.compareTo (min [b][j]) < 0) min [b][j] = v;
+                if (max [b][j] == null || v.compareTo (max [b][j]) > 0) max [b][j] = v;
+            } // if
+        } // for
+    } // add
+
+    /************************************************************************************
+     * Return the number of blocks.
+     *
+     * @return  the number of blocks
+     */
+    int blocks ()
+    {
+        return nBlocks;
+    } // blocks
+
+    /************************************************************************************
+     * Determine whether some value of column j in block b may lie in the range between
+     * lo and hi (a null bound means unbounded).
+     *
+     * @param b       the block
+     * @param j       the column
+     * @param lo      the lower bound of the range (or null)
+     * @param isInclLo  whether the lower bound is inclusive
+     * @param hi      the upper bound of the range (or null)
+     * @param isInclHi  whether the upper bound is inclusive
+     * @return  false if no tuple in the block can satisfy the range
+     */
+    @SuppressWarnings("unchecked")
+    boolean mayMatch (int b, int j, Comparable lo, boolean isInclLo, Comparable hi, boolean isInclHi)
+    {
+        if (min [b][j] == null) return false;                  // only nulls in this block
+        if (lo != null) {
+            int c = max [b][j].compareTo (lo);
+            if (c < 0 || c == 0 && ! isInclLo) return false;
+        } // if
+        if (hi != null) {
+            int c = min [b][j].compareTo (hi);
+            if (c > 0 || c == 0 && ! isInclHi) return false;
+        } // if
+        return true;
+    } // mayMatch
+
+    /************************************************************************************
+     * Return the minimum (non-null) value of column j over all blocks.
+     *
+     * @param j  the column
+     * @return  the minimum value (null if the column holds only nulls)
+     */
+    @SuppressWarnings("unchecked")
+    Comparable min (int j)
+    {
+        Comparable m = null;
+        for (int b = 0; b < nBlocks; b++) {
+            if (min [b][j] != null && (m == null || min [b][j].compareTo (m) < 0)) m = min [b][j];
+        } // for
+        return m;
+    } // min
+
+    /************************************************************************************
+     * Return the maximum (non-null) value of column j over all blocks.
+     *
+     * @param j  the column
+     * @return  the maximum value (null if the column holds only nulls)
+     */
+    @SuppressWarnings("unchecked")
+    Comparable max (int j)
+    {
+        Comparable m = null;
+        for (int b = 0; b < nBlocks; b++) {
+            if (max [b][j] != null && (m == null || max [b][j].compareTo (m) > 0)) m = max [b][j];
+        } // for
+        return m;
+    } // max
+
+    /************************************************************************************
+     * Return the number of null values of column j in block b.
+     *
+     * @param b  the block
+     * @param j  the column
+     * @return  the null count
+     */
+    int nullCount (int b, int j)
+    {
+        return nulls [b][j];
+    } // nullCount
+
+} // ZoneMap class